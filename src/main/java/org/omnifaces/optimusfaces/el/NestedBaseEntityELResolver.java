@@ -12,20 +12,32 @@
  */
 package org.omnifaces.optimusfaces.el;
 
-import static java.util.stream.Collectors.toList;
-import static org.omnifaces.utils.stream.Streams.stream;
-
 import java.beans.FeatureDescriptor;
-import java.util.Collection;
 import java.util.Iterator;
 
 import javax.el.ELContext;
 import javax.el.ELResolver;
 
+import org.omnifaces.optimusfaces.model.PropertyPath;
 import org.omnifaces.persistence.model.BaseEntity;
 
+/**
+ * <p>
+ * Resolves nested property paths such as <code>#{item['address.city']}</code> on a {@link BaseEntity}, as used by the
+ * <code>field</code> of <code>&lt;op:column&gt;</code>. When a property in the path represents a collection, then the
+ * remainder of the path is resolved on each of its items, and a list of those values is returned.
+ * <p>
+ * The path is resolved only once per entity class via {@link PropertyPath}, whose getters are then directly invoked.
+ * Only when there's no getter, the property is resolved via the EL resolver chain. Properties on a map are always
+ * resolved via the EL resolver chain, so that a map key such as <code>empty</code> isn't resolved as
+ * <code>isEmpty()</code>.
+ *
+ * @author Bauke Scholtz
+ */
 public class NestedBaseEntityELResolver extends ELResolver {
 
+	// Actions --------------------------------------------------------------------------------------------------------
+
 	@Override
 	public Class<?> getCommonPropertyType(ELContext context, Object base) {
 		return null;
@@ -38,30 +50,19 @@ public class NestedBaseEntityELResolver extends ELResolver {
 
 	@Override
 	public Object getValue(ELContext context, Object base, Object property) {
-        if (!(base instanceof BaseEntity)) {
-            return null;
-        }
-
-        String propertyString = property.toString();
-
-        if (!propertyString.contains(".")) {
-        	return null;
-        }
-
-        Object value = base;
+		if (!(base instanceof BaseEntity) || property == null) {
+			return null;
+		}
 
-        for (String propertyPart : propertyString.split("\\.")) {
-        	if (value instanceof Collection) {
-        		value = stream(value).map(item -> context.getELResolver().getValue(context, item, propertyPart)).collect(toList());
-        	}
-        	else {
-        		value = context.getELResolver().getValue(context, value, propertyPart);
-        	}
+		String propertyString = property.toString();
 
-        }
+		if (propertyString.indexOf('.') < 0) {
+			return null;
+		}
 
-        context.setPropertyResolved(true);
-        return value;
+		Object value = PropertyPath.of(base.getClass(), propertyString).getValue(base, (bean, propertyName) -> context.getELResolver().getValue(context, bean, propertyName));
+		context.setPropertyResolved(true);
+		return value;
 	}
 
 	@Override
@@ -0,0 +1,145 @@
+/*
+ * Copyright OmniFaces
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.optimusfaces.model;
+
+import static java.util.logging.Level.FINE;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.servlet.ServletContext;
+
+/**
+ * <p>
+ * Resolves the default {@link Executor} for background work of the paged data model, such as prefetching the next page
+ * and exporting. In this scanning order:
+ * <ol>
+ * <li>The container's default managed executor service, as available in JNDI under
+ * <code>java:comp/DefaultManagedExecutorService</code>.
+ * <li>Only when explicitly enabled via the {@value #PARAM_NAME_VIRTUAL_THREADS} context parameter, and only on JDK 21
+ * or newer, an executor which starts a new virtual thread per task. This is intended for a servlet container without a
+ * managed executor service. It is shut down when the application is destroyed.
+ * <li>An executor which runs the task immediately on the calling thread.
+ * </ol>
+ * <p>
+ * You can override it per model via {@link PagedDataModel.Builder#executor(Executor)}.
+ *
+ * @see PagedDataModel
+ * @author Bauke Scholtz
+ */
+public final class BackgroundExecutor {
+
+	// Constants ------------------------------------------------------------------------------------------------------
+
+	/** The context parameter name to enable the virtual thread executor when no managed executor is available. */
+	public static final String PARAM_NAME_VIRTUAL_THREADS = "org.omnifaces.optimusfaces.VIRTUAL_THREADS";
+
+	private static final Logger logger = Logger.getLogger(BackgroundExecutor.class.getName());
+
+	private static final String VIRTUAL_THREAD_EXECUTOR_METHOD = "newVirtualThreadPerTaskExecutor";
+	private static final String DEFAULT_MANAGED_EXECUTOR_SERVICE = "java:comp/DefaultManagedExecutorService";
+	private static final Executor CALLER_THREAD = Runnable::run;
+
+
+	// Properties -----------------------------------------------------------------------------------------------------
+
+	private static volatile boolean virtualThreadsEnabled;
+	private static volatile ExecutorService virtualThreadExecutor;
+
+
+	// Constructors ---------------------------------------------------------------------------------------------------
+
+	private BackgroundExecutor() {
+		// Hide constructor.
+	}
+
+
+	// Getters --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Returns the default executor for background work of the paged data model.
+	 * @return The default executor for background work of the paged data model.
+	 */
+	public static Executor getDefault() {
+		Executor executor = getManagedExecutor();
+
+		if (executor == null && virtualThreadsEnabled) {
+			executor = getVirtualThreadExecutor();
+		}
+
+		return (executor == null) ? CALLER_THREAD : executor;
+	}
+
+	/**
+	 * Returns whether given executor runs the task immediately on the calling thread.
+	 * @param executor The executor.
+	 * @return Whether given executor runs the task immediately on the calling thread.
+	 */
+	public static boolean isCallerThread(Executor executor) {
+		return executor == CALLER_THREAD;
+	}
+
+
+	// Lifecycle ------------------------------------------------------------------------------------------------------
+
+	static void initialize(ServletContext servletContext) {
+		virtualThreadsEnabled = Boolean.parseBoolean(servletContext.getInitParameter(PARAM_NAME_VIRTUAL_THREADS));
+	}
+
+	static void destroy() {
+		virtualThreadsEnabled = false;
+
+		synchronized (BackgroundExecutor.class) {
+			if (virtualThreadExecutor != null) {
+				virtualThreadExecutor.shutdownNow();
+				virtualThreadExecutor = null;
+			}
+		}
+	}
+
+
+	// Helpers --------------------------------------------------------------------------------------------------------
+
+	private static Executor getVirtualThreadExecutor() {
+		if (virtualThreadExecutor == null) {
+			synchronized (BackgroundExecutor.class) {
+				if (virtualThreadExecutor == null && virtualThreadsEnabled) {
+					try {
+						virtualThreadExecutor = (ExecutorService) Executors.class.getMethod(VIRTUAL_THREAD_EXECUTOR_METHOD).invoke(null);
+					}
+					catch (Exception | LinkageError notJDK21) {
+						logger.log(FINE, "Virtual threads are not available, falling back to caller thread.", notJDK21);
+						virtualThreadsEnabled = false;
+					}
+				}
+			}
+		}
+
+		return virtualThreadExecutor;
+	}
+
+	private static Executor getManagedExecutor() {
+		try {
+			return (Executor) new InitialContext().lookup(DEFAULT_MANAGED_EXECUTOR_SERVICE);
+		}
+		catch (NamingException | ClassCastException notAvailable) {
+			logger.log(FINE, "Managed executor is not available, falling back.", notAvailable);
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,1938 @@
+/*
+ * Copyright OmniFaces
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.optimusfaces.model;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.synchronizedMap;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toList;
+import static org.omnifaces.optimusfaces.model.LazyPagedDataModel.parseInitParameter;
+import static org.omnifaces.optimusfaces.model.NonLazyPagedDataModel.PARAM_NAME_PARALLEL_THRESHOLD;
+import static org.omnifaces.optimusfaces.model.NonLazyPagedDataModel.PARAM_NAME_TOP_K_RATIO;
+import static org.omnifaces.utils.Lang.isEmpty;
+import static org.omnifaces.utils.stream.Streams.stream;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.text.Collator;
+import java.time.temporal.Temporal;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import javax.faces.context.FacesContext;
+import javax.servlet.ServletContext;
+
+import org.omnifaces.optimusfaces.model.DatasetColumn.LongColumn;
+import org.omnifaces.optimusfaces.model.LazyPagedDataModel.ChunkConsumer;
+import org.omnifaces.persistence.criteria.Criteria;
+import org.omnifaces.persistence.criteria.Like;
+import org.omnifaces.persistence.model.Identifiable;
+import org.omnifaces.persistence.model.dto.Page;
+import org.omnifaces.util.Beans;
+import org.omnifaces.util.Faces;
+import org.primefaces.model.SortMeta;
+
+/**
+ * <p>
+ * The in-memory data of a {@link NonLazyPagedDataModel}. The filtered and sorted indexes into the data are cached per
+ * criteria and ordering, so that paging within the same filtering and sorting only needs to pick the rows of the page,
+ * and so that switching back to a previous sorting doesn't need to sort again. The sort keys, such as the
+ * {@link java.text.CollationKey} of a string property, are computed only once per row and property and cached as well.
+ * When only the first pages of a large result are needed, then only their rows are picked instead of sorting
+ * everything. Criteria with plain values, such as those of columns with <code>filterOptions</code>, are answered by a
+ * bitmap index per property when it has only a few distinct values, so that combined criteria are merely AND and OR
+ * operations on bitmaps. On large data, {@link Like} criteria, such as those of the global search, are first narrowed
+ * down to the rows containing all trigrams of the search string by a trigram index per property. When the dataset is
+ * columnar, then the properties are extracted into a {@link DatasetColumn} on first use, so that the remaining criteria
+ * are matched against typed arrays instead of invoking the getters of every row.
+ * <p>
+ * String comparisons are case insensitive in the data locale of the table, see also
+ * {@link org.primefaces.component.datatable.DataTable#resolveDataLocale()}. This also applies to {@link Like}
+ * criteria, which are thus not matched via {@link Like#applies(Object)}, as that one lowercases in the default locale
+ * of the JVM instead. This only makes a difference in locales with special casing rules, such as Turkish, wherein the
+ * uppercase <code>I</code> lowercases to a dotless <code>ı</code> instead of <code>i</code>.
+ * <p>
+ * A dataset is safe to be shared by multiple paged data models and users. When the same data is presented in multiple
+ * views, such as reference data, then you can create the dataset once via {@link #of(List)} in an application scoped
+ * bean and build the paged data model of each view via {@link PagedDataModel#nonLazy(Dataset)}. The data, along with
+ * its indexes, then lives only once in the application, and the view only holds a reference to it. Give it a name via
+ * {@link #share(String)}, so that when the paged data model is serialized, e.g. on session failover, then only the
+ * name is serialized and the dataset of that name is looked up again on deserialization. Otherwise the data is
+ * serialized along with it and restored into a new dataset which is no longer shared.
+ * <p>
+ * The rows themselves are treated as immutable. Changes must be applied via {@link #add(Object)},
+ * {@link #update(Object)} and {@link #remove(Object)}, which update the cached indexes incrementally instead of
+ * dropping them: a new row is appended to the filtered indexes it matches, inserted into the sorted indexes at its
+ * binary searched position, and added to the bitmap indexes and columns. A removed row only leaves a gap, until more
+ * rows have been removed than there are left. The changes block the paging of other users only for their own duration.
+ *
+ * @param <E> The generic entity type.
+ * @see PagedDataModel
+ * @author Bauke Scholtz
+ */
+public final class Dataset<E> implements Serializable {
+
+	// Constants ------------------------------------------------------------------------------------------------------
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int DEFAULT_PARALLEL_THRESHOLD = 50000;
+	private static final int DEFAULT_TOP_K_RATIO = 16;
+	private static final int MAX_CACHED_INDEXES = 16;
+	private static final int MAX_CACHED_SORT_KEYS = 8;
+	private static final int MAX_CACHED_BITMAP_INDEXES = 16;
+	private static final int MAX_BITMAP_INDEX_CARDINALITY = 64; // Each distinct value costs one bit per row.
+	private static final int MAX_CACHED_TRIGRAM_INDEXES = 16;
+	private static final int MIN_ROWS_FOR_TRIGRAM_INDEX = 10000; // Below this a linear scan is fast enough.
+	private static final int TRIGRAM_LENGTH = 3;
+	private static final int TRIGRAM_INDEX_REBUILD_RATIO = 16; // Rows added after the trigram index was built are always candidates.
+	private static final int MAX_CACHED_COLUMNS = 32;
+	private static final int INSERTION_SORT_THRESHOLD = 7;
+	private static final int PARALLEL_SORT_GRANULARITY = 8192;
+	private static final String PARALLEL_THREAD_NAME_PREFIX = "optimusfaces-dataset-";
+
+
+	// Properties -----------------------------------------------------------------------------------------------------
+
+	private static volatile ForkJoinPool parallelPool;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final IndexComparator idComparator = this::compareIds;
+	private volatile int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+	private volatile int topKRatio = DEFAULT_TOP_K_RATIO;
+	private volatile String name;
+	private List<E> rows;
+	private Class<?> type;
+	private int[] allIndex;
+	private BitSet nullRows;
+	private BitSet removedRows;
+	private Object[] ids;
+	private LongColumn longIds;
+	private Map<Object, Integer> positions;
+	private final Map<List<Object>, int[]> filteredIndexes = newCache(MAX_CACHED_INDEXES);
+	private final Map<List<Object>, int[]> sortedIndexes = newCache(MAX_CACHED_INDEXES);
+	private final Map<List<Object>, int[]> pageIndexes = newCache(MAX_CACHED_INDEXES);
+	private final Map<List<Object>, Object[]> sortKeyColumns = newCache(MAX_CACHED_SORT_KEYS);
+	private final Map<String, Optional<LongColumn>> longSortKeyColumns = newCache(MAX_CACHED_SORT_KEYS);
+	private final Map<List<Object>, Map<String, BitSet>> bitmapIndexes = newCache(MAX_CACHED_BITMAP_INDEXES);
+	private final Map<List<Object>, TrigramIndex> trigramIndexes = newCache(MAX_CACHED_TRIGRAM_INDEXES);
+	private final Map<List<Object>, DatasetColumn> columns;
+
+
+	// Constructors ---------------------------------------------------------------------------------------------------
+
+	private Dataset(List<E> rows, boolean columnar) {
+		this.columns = columnar ? newCache(MAX_CACHED_COLUMNS) : null;
+		init(rows);
+	}
+
+	/**
+	 * (Re)initializes this dataset with a snapshot of given rows and clears all cached indexes.
+	 */
+	private void init(List<E> rows) {
+		this.rows = new ArrayList<>(rows);
+		this.type = rows.stream().filter(Objects::nonNull).map(Object::getClass).findFirst().orElse(null);
+		this.allIndex = IntStream.range(0, rows.size()).toArray();
+		this.nullRows = new BitSet(rows.size());
+		this.removedRows = new BitSet();
+		IntStream.of(allIndex).filter(i -> this.rows.get(i) == null).forEach(nullRows::set);
+		this.ids = this.rows.stream().map(Dataset::getComparableId).toArray();
+		this.longIds = LongColumn.of(ids);
+		this.positions = null;
+		asList(filteredIndexes, sortedIndexes, pageIndexes, sortKeyColumns, longSortKeyColumns, bitmapIndexes, trigramIndexes).forEach(Map::clear);
+
+		if (columns != null) {
+			columns.clear();
+		}
+	}
+
+	/**
+	 * Returns a dataset of a snapshot of given rows.
+	 * @param <E> The generic entity type.
+	 * @param rows The rows.
+	 * @return A dataset of a snapshot of given rows.
+	 */
+	public static <E> Dataset<E> of(List<E> rows) {
+		return of(rows, false);
+	}
+
+	/**
+	 * Returns a dataset of a snapshot of given rows, optionally columnar. When columnar, then each property is extracted
+	 * into a typed array on first use, see also {@link PagedDataModel.Builder#columnar()}.
+	 * @param <E> The generic entity type.
+	 * @param rows The rows.
+	 * @param columnar Whether the dataset is columnar.
+	 * @return A dataset of a snapshot of given rows.
+	 */
+	public static <E> Dataset<E> of(List<E> rows, boolean columnar) {
+		return new Dataset<>(rows, columnar);
+	}
+
+
+	// Actions --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Returns the rows matching the criteria of given page, in the ordering of given page, from the offset of given page
+	 * until the limit of given page, along with the total amount of matching rows.
+	 */
+	Entry<List<E>, Integer> getPage(Page page, Locale locale, Map<String, SortMeta> sortBy) {
+		readInitParameters();
+		lock.readLock().lock();
+
+		try {
+			List<Object> filterKey = asList(toFilterKey(page.getRequiredCriteria()), toFilterKey(page.getOptionalCriteria()), locale);
+			int[] filteredIndex = (type == null) ? allIndex : filter(filterKey, page, locale);
+			int offset = Math.min(filteredIndex.length, page.getOffset());
+			int limit = Math.min(filteredIndex.length - offset, page.getLimit());
+			int[] index = (type == null) ? allIndex : getSortedIndex(filterKey, filteredIndex, offset + limit, getSortKey(page.getOrdering(), locale, sortBy));
+			List<E> list = new ArrayList<>(limit);
+
+			for (int i = offset; i < offset + limit; i++) {
+				list.add(rows.get(index[i]));
+			}
+
+			return new SimpleImmutableEntry<>(list, filteredIndex.length);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Like {@link #getPage(Page, Locale, Map)}, but then in a single pass over the stream of given source, without
+	 * holding all rows. Only the rows until the limit of given page are held, in a bounded heap when the page is ordered.
+	 * The stream is closed afterwards.
+	 */
+	static <E> Entry<List<E>, Integer> getPage(Supplier<Stream<E>> source, Page page, Locale locale, Map<String, SortMeta> sortBy) {
+		StreamedPage<E> streamedPage = new StreamedPage<>(page, locale, getSortKey(page.getOrdering(), locale, sortBy), null);
+
+		try (Stream<E> rows = source.get()) {
+			rows.sequential().forEachOrdered(streamedPage);
+		}
+
+		return streamedPage.getPage();
+	}
+
+	/**
+	 * Passes the rows matching the criteria of given page to given consumer in chunks of the limit of given page, in the
+	 * ordering of given sort key as created by {@link #getSortKey(Map, Locale, Map)}. The offset of given page is
+	 * ignored. In order to hold at most one chunk, the stream of given source is streamed once per chunk, whereby each
+	 * pass keeps only the rows ranking after the last row of the previous chunk in a bounded heap. The ties are ranked
+	 * by their position in the stream, so the source must return the same rows in the same order on every pass. When
+	 * the sort key has no ordering, then the rows are passed in a single pass and in the order of the stream. The
+	 * streams are closed afterwards.
+	 */
+	static <E> void forEachChunk(Supplier<Stream<E>> source, Page page, Locale locale, List<Object> sortKey, ChunkConsumer<List<E>> chunkConsumer) throws IOException {
+		if (sortKey.size() > 1) {
+			forEachOrderedChunk(source, page, locale, sortKey, chunkConsumer);
+			return;
+		}
+
+		BeanPropertyFilter filter = null;
+		List<E> chunk = new ArrayList<>();
+
+		try (Stream<E> rows = source.get()) {
+			for (Iterator<E> iterator = rows.sequential().iterator(); iterator.hasNext();) {
+				E row = iterator.next();
+
+				if (row == null) {
+					continue;
+				}
+
+				if (filter == null) {
+					filter = new BeanPropertyFilter(locale, resolvePropertyPaths(row.getClass(), page.getRequiredCriteria()), resolvePropertyPaths(row.getClass(), page.getOptionalCriteria()));
+				}
+
+				if (filter.matches(row)) {
+					chunk.add(row);
+
+					if (chunk.size() >= page.getLimit()) {
+						chunkConsumer.accept(chunk);
+						chunk = new ArrayList<>();
+					}
+				}
+			}
+		}
+
+		if (!chunk.isEmpty()) {
+			chunkConsumer.accept(chunk);
+		}
+	}
+
+	private static <E> void forEachOrderedChunk(Supplier<Stream<E>> source, Page page, Locale locale, List<Object> sortKey, ChunkConsumer<List<E>> chunkConsumer) throws IOException {
+		RankedRow<E> last = null;
+
+		while (true) {
+			StreamedPage<E> streamedPage = new StreamedPage<>(page, locale, sortKey, last);
+
+			try (Stream<E> rows = source.get()) {
+				rows.sequential().forEachOrdered(streamedPage);
+			}
+
+			List<RankedRow<E>> chunk = streamedPage.getRankedRows();
+
+			if (chunk.isEmpty()) {
+				break;
+			}
+
+			chunkConsumer.accept(chunk.stream().map(rankedRow -> rankedRow.row).collect(toList()));
+
+			if (chunk.size() < page.getLimit()) {
+				break;
+			}
+
+			last = chunk.get(chunk.size() - 1);
+		}
+	}
+
+	/**
+	 * Shares this dataset under given name in the application. When a paged data model of this dataset is serialized,
+	 * e.g. on session failover, then only the name is serialized, and the dataset shared under that name is looked up
+	 * again on deserialization. It must therefore be shared during application startup, also on the other nodes of a
+	 * cluster, e.g. in an eagerly initialized application scoped bean. A dataset which is previously shared under the
+	 * same name is replaced, e.g. when the data is reloaded. The datasets are shared per servlet context, so multiple
+	 * applications on the same class loader, such as the web modules of an EAR, don't see each other's datasets. All
+	 * datasets are unshared when the application is destroyed.
+	 * @param name The name to share this dataset under.
+	 * @return This dataset.
+	 * @throws IllegalStateException When this dataset is already shared under another name.
+	 */
+	public Dataset<E> share(String name) {
+		requireNonNull(name, "name");
+		Map<String, Dataset<?>> sharedDatasets = getSharedDatasets(getServletContext(), Dataset.class);
+
+		synchronized (sharedDatasets) {
+			if (this.name != null && !this.name.equals(name)) {
+				throw new IllegalStateException("Dataset is already shared as " + this.name);
+			}
+
+			Dataset<?> previous = sharedDatasets.put(name, this);
+
+			if (previous != null && previous != this) {
+				previous.name = null;
+			}
+
+			this.name = name;
+		}
+
+		return this;
+	}
+
+	/**
+	 * Adds given row to this dataset. The cached indexes are updated incrementally: the row is appended to the filtered
+	 * indexes it matches and inserted into the sorted indexes at its binary searched position, so that the current page
+	 * doesn't need to be filtered and sorted again.
+	 * @param row The row to add.
+	 */
+	public void add(E row) {
+		lock.writeLock().lock();
+
+		try {
+			append(row);
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Replaces the row having the same ID as given row, or else the row which equals given row, by given row. The
+	 * cached indexes are updated incrementally, see also {@link #add(Object)}.
+	 * @param row The row to update.
+	 * @throws IllegalArgumentException When there is no such row in this dataset.
+	 */
+	public void update(E row) {
+		lock.writeLock().lock();
+
+		try {
+			int position = indexOf(row);
+
+			if (position < 0) {
+				throw new IllegalArgumentException("row is not in dataset: " + row);
+			}
+
+			delete(position);
+			append(row);
+			compactIfNecessary();
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes the row having the same ID as given row, or else the row which equals given row. The cached indexes are
+	 * updated incrementally, see also {@link #add(Object)}.
+	 * @param row The row to remove.
+	 * @return Whether the row was in this dataset.
+	 */
+	public boolean remove(E row) {
+		lock.writeLock().lock();
+
+		try {
+			int position = indexOf(row);
+
+			if (position < 0) {
+				return false;
+			}
+
+			delete(position);
+			compactIfNecessary();
+			return true;
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Appends given row at the end of the rows and incorporates it into the cached indexes. The indexes which can't
+	 * incorporate it, e.g. because the type of the property value is different, are dropped and recomputed on demand.
+	 */
+	@SuppressWarnings("unchecked")
+	private void append(E row) {
+		if (type == null && row != null) {
+			List<E> liveRows = getLiveRows();
+			liveRows.add(row);
+			init(liveRows); // The type wasn't known yet, so there are no indexes to maintain.
+			return;
+		}
+
+		int position = rows.size();
+		rows.add(row);
+		allIndex = insert(allIndex, allIndex.length, position);
+		nullRows.set(position, row == null);
+		ids = set(ids, position, getComparableId(row));
+
+		if (longIds != null && !longIds.set(position, ids[position])) {
+			longIds = null;
+		}
+
+		if (positions != null) {
+			positions.put(getKey(row), position);
+		}
+
+		sortKeyColumns.replaceAll((key, keys) -> set(keys, position, getSortKey(row, key, Collator.getInstance((Locale) key.get(2)))));
+		removeIf(longSortKeyColumns, (property, keys) -> keys.isPresent() && !keys.get().set(position, getValue(row, property)));
+		removeIf(bitmapIndexes, (key, bitmapIndex) -> !bitmapIndex.isEmpty() && !addToBitmapIndex(bitmapIndex, position, row, (String) key.get(0), (Locale) key.get(1)));
+
+		if (columns != null) {
+			removeIf(columns, (key, column) -> !column.set(position, getValue(row, (String) key.get(0))));
+		}
+
+		Map<List<Object>, Boolean> matches = new HashMap<>();
+		filteredIndexes.replaceAll((filterKey, index) -> matches.computeIfAbsent(filterKey, key -> matches(key, row)) ? insert(index, index.length, position) : index);
+		sortedIndexes.replaceAll((sortKey, index) -> insert(index, insertionPoint(index, position, getComparator(sortKey)), position));
+		pageIndexes.replaceAll((pageKey, index) -> {
+			if (!matches.computeIfAbsent((List<Object>) pageKey.get(0), key -> matches(key, row))) {
+				return index;
+			}
+
+			int insertionPoint = insertionPoint(index, position, getComparator((List<Object>) pageKey.get(1)));
+			return (insertionPoint < index.length) ? insert(index, insertionPoint, position) : index; // Else the page index is still a valid head.
+		});
+	}
+
+	/**
+	 * Removes the row at given position from the cached indexes and releases it. The position itself is not reused.
+	 */
+	private void delete(int position) {
+		E row = rows.set(position, null);
+		removedRows.set(position);
+		nullRows.clear(position);
+		allIndex = remove(allIndex, position);
+
+		if (positions != null) {
+			positions.remove(getKey(row), position);
+		}
+
+		bitmapIndexes.values().forEach(bitmapIndex -> bitmapIndex.values().forEach(bitmap -> bitmap.clear(position)));
+		filteredIndexes.replaceAll((filterKey, index) -> remove(index, position));
+		sortedIndexes.replaceAll((sortKey, index) -> remove(index, position));
+		pageIndexes.replaceAll((pageKey, index) -> remove(index, position));
+	}
+
+	/**
+	 * Starts over when more rows have been removed than there are left, so that the removed positions don't keep on
+	 * costing memory and bitmap space.
+	 */
+	private void compactIfNecessary() {
+		if (removedRows.cardinality() > allIndex.length) {
+			init(getLiveRows());
+		}
+	}
+
+	/**
+	 * Returns the position of the row having the same ID as given row, or else the row which equals given row, or -1
+	 * when there is none. The positions are mapped on first use.
+	 */
+	private int indexOf(E row) {
+		if (positions == null) {
+			positions = new HashMap<>(allIndex.length * 4 / 3 + 1);
+			IntStream.of(allIndex).forEach(position -> positions.put(getKey(rows.get(position)), position));
+		}
+
+		return positions.getOrDefault(getKey(row), -1);
+	}
+
+	/**
+	 * Returns whether given row matches the criteria of given filter key.
+	 */
+	@SuppressWarnings("unchecked")
+	private boolean matches(List<Object> filterKey, E row) {
+		Locale locale = (Locale) filterKey.get(2);
+		Map<PropertyPath, Entry<String, Object>> requiredCriteria = resolvePropertyPaths(type, (Map<String, Object>) filterKey.get(0));
+		Map<PropertyPath, Entry<String, Object>> optionalCriteria = resolvePropertyPaths(type, (Map<String, Object>) filterKey.get(1));
+		return new BeanPropertyFilter(locale, requiredCriteria, optionalCriteria).matches(row);
+	}
+
+	/**
+	 * Returns the given filtered index sorted at least until given needed length. When the needed length is small
+	 * compared to the filtered index and the sorted permutation isn't cached yet, then only the needed rows are picked
+	 * via a bounded heap instead of sorting all rows.
+	 */
+	private int[] getSortedIndex(List<Object> filterKey, int[] filteredIndex, int neededLength, List<Object> sortKey) {
+		if (filteredIndex.length < 2 || sortKey.size() == 1 || neededLength == 0) {
+			return filteredIndex;
+		}
+
+		List<Object> pageKey = asList(filterKey, sortKey);
+		int[] pageIndex = pageIndexes.get(pageKey);
+
+		if (pageIndex != null && pageIndex.length >= neededLength) {
+			return pageIndex;
+		}
+
+		int[] sortedIndex = sortedIndexes.get(sortKey);
+
+		if (sortedIndex != null) {
+			pageIndex = (filteredIndex.length == allIndex.length) ? sortedIndex : retain(sortedIndex, filteredIndex);
+		}
+		else if (neededLength <= filteredIndex.length / topKRatio) {
+			pageIndex = sort(filteredIndex, neededLength, sortKey);
+		}
+		else if (filteredIndex.length < allIndex.length) {
+			pageIndex = sort(filteredIndex, filteredIndex.length, sortKey); // Don't sort everything when only a part is needed.
+		}
+		else {
+			pageIndex = computeIfAbsent(sortedIndexes, sortKey, k -> sort(allIndex, allIndex.length, sortKey));
+		}
+
+		pageIndexes.put(pageKey, pageIndex);
+		return pageIndex;
+	}
+
+	private int[] filter(List<Object> filterKey, Page page, Locale locale) {
+		if (page.getRequiredCriteria().isEmpty() && page.getOptionalCriteria().isEmpty()) {
+			return allIndex;
+		}
+
+		return computeIfAbsent(filteredIndexes, filterKey, key -> {
+			Map<PropertyPath, Entry<String, Object>> requiredCriteria = resolvePropertyPaths(type, page.getRequiredCriteria());
+			Map<PropertyPath, Entry<String, Object>> optionalCriteria = resolvePropertyPaths(type, page.getOptionalCriteria());
+			BitSet candidates = filterByBitmapIndexes(requiredCriteria, optionalCriteria, locale);
+			BitSet likeCandidates = getLikeCandidates(requiredCriteria, optionalCriteria, locale);
+
+			if (likeCandidates != null) {
+				if (candidates == null) {
+					candidates = likeCandidates;
+				}
+				else {
+					candidates.and(likeCandidates);
+				}
+			}
+
+			if (candidates != null) {
+				candidates.andNot(removedRows);
+				candidates.or(nullRows); // BeanPropertyFilter lets them through as well.
+			}
+
+			int[] candidateIndex = (candidates == null) ? allIndex : candidates.stream().toArray();
+
+			IntPredicate columnFilter = compileColumnFilter(requiredCriteria, optionalCriteria, locale);
+
+			if (columnFilter == null && requiredCriteria.isEmpty() && optionalCriteria.isEmpty()) {
+				return candidateIndex;
+			}
+
+			IntPredicate rowFilter = (columnFilter != null) ? columnFilter : (i -> true);
+			BeanPropertyFilter filter = new BeanPropertyFilter(locale, requiredCriteria, optionalCriteria);
+			return parallelIfNecessary(candidateIndex.length, parallel -> parallel(IntStream.of(candidateIndex), parallel)
+				.filter(i -> rows.get(i) == null || (rowFilter.test(i) && filter.matches(rows.get(i)))).toArray());
+		});
+	}
+
+	/**
+	 * Returns the predicate on the row index for the criteria which can be compiled against the extracted columns, or
+	 * <code>null</code> when this dataset is not columnar or when there are no such criteria. Required criteria are
+	 * combined via AND and optional criteria via OR, the latter only when all of them can be compiled. The criteria which
+	 * are compiled are removed from the given maps, so that only the remaining criteria need to be matched on the rows.
+	 */
+	private IntPredicate compileColumnFilter(Map<PropertyPath, Entry<String, Object>> requiredCriteria, Map<PropertyPath, Entry<String, Object>> optionalCriteria, Locale locale) {
+		if (columns == null) {
+			return null;
+		}
+
+		IntPredicate columnFilter = null;
+
+		for (Iterator<Entry<PropertyPath, Entry<String, Object>>> iterator = requiredCriteria.entrySet().iterator(); iterator.hasNext();) {
+			Entry<PropertyPath, Entry<String, Object>> criteria = iterator.next();
+			IntPredicate predicate = getColumn(criteria.getKey(), locale).compile(criteria.getValue().getValue(), locale);
+
+			if (predicate != null) {
+				columnFilter = (columnFilter == null) ? predicate : columnFilter.and(predicate);
+				iterator.remove();
+			}
+		}
+
+		if (!optionalCriteria.isEmpty()) {
+			IntPredicate optionalFilter = i -> false;
+
+			for (Entry<PropertyPath, Entry<String, Object>> criteria : optionalCriteria.entrySet()) {
+				IntPredicate predicate = getColumn(criteria.getKey(), locale).compile(criteria.getValue().getValue(), locale);
+
+				if (predicate == null) {
+					optionalFilter = null;
+					break;
+				}
+
+				optionalFilter = optionalFilter.or(predicate);
+			}
+
+			if (optionalFilter != null) {
+				columnFilter = (columnFilter == null) ? optionalFilter : columnFilter.and(optionalFilter);
+				optionalCriteria.clear();
+			}
+		}
+
+		return columnFilter;
+	}
+
+	/**
+	 * Returns the extracted column of given property. This is extracted only once per property and locale.
+	 */
+	private DatasetColumn getColumn(PropertyPath propertyPath, Locale locale) {
+		return computeIfAbsent(columns, asList(propertyPath.getPath(), locale), key -> DatasetColumn.of(rows, propertyPath, locale));
+	}
+
+	/**
+	 * Returns the rows matching the criteria which can be answered by a bitmap index, or <code>null</code> when there
+	 * are no such criteria. Required criteria are combined via AND and optional criteria via OR, the latter only when
+	 * all of them can be answered by a bitmap index. The criteria which are answered are removed from the given maps,
+	 * so that only the remaining criteria need to be matched against the candidate rows.
+	 */
+	private BitSet filterByBitmapIndexes(Map<PropertyPath, Entry<String, Object>> requiredCriteria, Map<PropertyPath, Entry<String, Object>> optionalCriteria, Locale locale) {
+		BitSet candidates = null;
+
+		for (Iterator<Entry<PropertyPath, Entry<String, Object>>> iterator = requiredCriteria.entrySet().iterator(); iterator.hasNext();) {
+			Entry<PropertyPath, Entry<String, Object>> criteria = iterator.next();
+			BitSet matches = getBitmapMatches(criteria.getKey(), criteria.getValue().getValue(), locale);
+
+			if (matches != null) {
+				if (candidates == null) {
+					candidates = matches;
+				}
+				else {
+					candidates.and(matches);
+				}
+
+				iterator.remove();
+			}
+		}
+
+		if (!optionalCriteria.isEmpty()) {
+			BitSet optionalMatches = new BitSet(rows.size());
+
+			for (Entry<PropertyPath, Entry<String, Object>> criteria : optionalCriteria.entrySet()) {
+				BitSet matches = getBitmapMatches(criteria.getKey(), criteria.getValue().getValue(), locale);
+
+				if (matches == null) {
+					optionalMatches = null;
+					break;
+				}
+
+				optionalMatches.or(matches);
+			}
+
+			if (optionalMatches != null) {
+				if (candidates == null) {
+					candidates = optionalMatches;
+				}
+				else {
+					candidates.and(optionalMatches);
+				}
+
+				optionalCriteria.clear();
+			}
+		}
+
+		return candidates;
+	}
+
+	/**
+	 * Returns the candidate rows for the {@link Like} criteria as narrowed down by a trigram index, or <code>null</code>
+	 * when there are no such criteria or when the data is too small to bother. Required criteria are combined via AND
+	 * and optional criteria via OR, the latter only when all of them are {@link Like} criteria. The candidate rows may
+	 * not all match, so the criteria are left in the given maps in order to be matched against the candidate rows.
+	 */
+	private BitSet getLikeCandidates(Map<PropertyPath, Entry<String, Object>> requiredCriteria, Map<PropertyPath, Entry<String, Object>> optionalCriteria, Locale locale) {
+		if (allIndex.length < MIN_ROWS_FOR_TRIGRAM_INDEX) {
+			return null;
+		}
+
+		BitSet candidates = null;
+
+		for (Entry<PropertyPath, Entry<String, Object>> criteria : requiredCriteria.entrySet()) {
+			BitSet matches = getLikeCandidates(criteria.getKey(), criteria.getValue().getValue(), locale);
+
+			if (matches != null) {
+				if (candidates == null) {
+					candidates = matches;
+				}
+				else {
+					candidates.and(matches);
+				}
+			}
+		}
+
+		if (!optionalCriteria.isEmpty()) {
+			BitSet optionalMatches = new BitSet(rows.size());
+
+			for (Entry<PropertyPath, Entry<String, Object>> criteria : optionalCriteria.entrySet()) {
+				BitSet matches = getLikeCandidates(criteria.getKey(), criteria.getValue().getValue(), locale);
+
+				if (matches == null) {
+					optionalMatches = null;
+					break;
+				}
+
+				optionalMatches.or(matches);
+			}
+
+			if (optionalMatches != null) {
+				if (candidates == null) {
+					candidates = optionalMatches;
+				}
+				else {
+					candidates.and(optionalMatches);
+				}
+			}
+		}
+
+		return candidates;
+	}
+
+	/**
+	 * Returns the rows whose property contains all trigrams of any of the given {@link Like} criteria values, or
+	 * <code>null</code> when not all criteria values are {@link Like} criteria of at least {@value #TRIGRAM_LENGTH}
+	 * characters.
+	 */
+	private BitSet getLikeCandidates(PropertyPath propertyPath, Object criteriaValue, Locale locale) {
+		List<Object> values = stream(criteriaValue).collect(toList());
+
+		if (values.isEmpty() || !values.stream().allMatch(value -> value instanceof Like && ((Like) value).getValue() != null && ((Like) value).getValue().length() >= TRIGRAM_LENGTH)) {
+			return null;
+		}
+
+		TrigramIndex trigramIndex = getTrigramIndex(propertyPath, locale);
+		BitSet matches = new BitSet(rows.size());
+		matches.set(trigramIndex.size, rows.size());
+
+		for (Object value : values) {
+			int[] candidates = null;
+
+			for (String trigram : getTrigrams(((Like) value).getValue(), locale)) {
+				int[] postings = trigramIndex.postings.getOrDefault(trigram, new int[0]);
+				candidates = (candidates == null) ? postings : intersect(candidates, postings);
+
+				if (candidates.length == 0) {
+					break;
+				}
+			}
+
+			IntStream.of(candidates).forEach(matches::set);
+		}
+
+		return matches;
+	}
+
+	/**
+	 * Returns the trigram index of given property and locale, which maps each trigram of the string representation of
+	 * the property value, lowercased in given locale, to the ascending rows containing it. This is computed only once per
+	 * property and locale, and computed again when too many rows have been added since.
+	 */
+	private TrigramIndex getTrigramIndex(PropertyPath propertyPath, Locale locale) {
+		List<Object> trigramKey = asList(propertyPath.getPath(), locale);
+		TrigramIndex trigramIndex = trigramIndexes.get(trigramKey);
+
+		if (trigramIndex != null && rows.size() - trigramIndex.size <= trigramIndex.size / TRIGRAM_INDEX_REBUILD_RATIO) {
+			return trigramIndex;
+		}
+
+		trigramIndexes.remove(trigramKey);
+		return computeIfAbsent(trigramIndexes, trigramKey, key -> {
+			Map<String, IntStream.Builder> postings = new HashMap<>();
+
+			for (int i = 0; i < rows.size(); i++) {
+				E row = rows.get(i);
+				Object value = (row == null) ? null : propertyPath.getValue(row);
+
+				if (value != null) {
+					int rowIndex = i;
+					getTrigrams(value.toString(), locale).forEach(trigram -> postings.computeIfAbsent(trigram, k -> IntStream.builder()).add(rowIndex));
+				}
+			}
+
+			Map<String, int[]> index = new HashMap<>(postings.size() * 4 / 3 + 1);
+			postings.forEach((trigram, builder) -> index.put(trigram, builder.build().toArray()));
+			return new TrigramIndex(index, rows.size());
+		});
+	}
+
+	/**
+	 * Returns the rows whose property matches any of the given plain criteria values, or <code>null</code> when this
+	 * can't be answered by a bitmap index, e.g. because the criteria value is a {@link Criteria}, or because the property
+	 * represents a collection or has too many distinct values.
+	 */
+	private BitSet getBitmapMatches(PropertyPath propertyPath, Object criteriaValue, Locale locale) {
+		if (propertyPath.isCollection() || stream(criteriaValue).anyMatch(Criteria.class::isInstance)) {
+			return null;
+		}
+
+		Map<String, BitSet> bitmapIndex = getBitmapIndex(propertyPath, locale);
+
+		if (bitmapIndex.isEmpty()) {
+			return null;
+		}
+
+		BitSet matches = new BitSet(rows.size());
+		stream(criteriaValue).map(value -> bitmapIndex.get(lower(value, locale))).filter(Objects::nonNull).forEach(matches::or);
+		return matches;
+	}
+
+	/**
+	 * Returns the bitmap index of given property, which maps each distinct lowercased value to the rows having it. This
+	 * is computed only once per property and locale. When the property turns out to represent a collection or to have
+	 * more than {@value #MAX_BITMAP_INDEX_CARDINALITY} distinct values, then an empty map is returned.
+	 */
+	private Map<String, BitSet> getBitmapIndex(PropertyPath propertyPath, Locale locale) {
+		return computeIfAbsent(bitmapIndexes, asList(propertyPath.getPath(), locale), key -> {
+			Map<String, BitSet> bitmapIndex = new HashMap<>();
+
+			for (int i = 0; i < rows.size(); i++) {
+				if (!addToBitmapIndex(bitmapIndex, i, rows.get(i), propertyPath.getPath(), locale)) {
+					return emptyMap();
+				}
+			}
+
+			return bitmapIndex;
+		});
+	}
+
+	/**
+	 * Adds given row at given position to given bitmap index of given property. Returns <code>false</code> when the
+	 * property turns out to represent a collection or to have too many distinct values.
+	 */
+	private boolean addToBitmapIndex(Map<String, BitSet> bitmapIndex, int position, E row, String property, Locale locale) {
+		if (row == null) {
+			return true;
+		}
+
+		Object value = getValue(row, property);
+
+		if (value instanceof Collection) {
+			return false;
+		}
+
+		bitmapIndex.computeIfAbsent(lower(value, locale), k -> new BitSet(rows.size())).set(position);
+		return bitmapIndex.size() <= MAX_BITMAP_INDEX_CARDINALITY;
+	}
+
+	/**
+	 * Sorts given index Schwartzian transform style: the sort keys of each ordering property are computed only once per
+	 * row and cached, so that the comparisons don't need to invoke getters, lowercase strings or run full collation.
+	 * Numeric and temporal properties are encoded into primitive keys, and the index itself is merge sorted as a
+	 * primitive array, so that the comparisons don't need to box anything either.
+	 * When given length is less than the length of given index, then only the first rows until the given length are
+	 * picked via a bounded heap and sorted. Ties are ordered by their ID and then by their position in the data, so that
+	 * the result is deterministic, also when sorted in parallel.
+	 */
+	private int[] sort(int[] index, int length, List<Object> sortKey) {
+		IndexComparator comparator = getComparator(sortKey);
+
+		if (length < index.length) {
+			Comparator<Integer> boxedComparator = comparator::compare;
+			PriorityQueue<Integer> heap = new PriorityQueue<>(length + 1, boxedComparator.reversed());
+
+			for (int position : index) {
+				if (heap.size() < length) {
+					heap.add(position);
+				}
+				else if (comparator.compare(position, heap.peek()) < 0) {
+					heap.poll();
+					heap.add(position);
+				}
+			}
+
+			return heap.stream().sorted(boxedComparator).mapToInt(Integer::intValue).toArray();
+		}
+
+		int[] sortedIndex = index.clone();
+		return parallelIfNecessary(sortedIndex.length, parallel -> {
+			int[] buffer = sortedIndex.clone();
+
+			if (parallel) {
+				new MergeSort(buffer, sortedIndex, 0, sortedIndex.length, comparator).invoke();
+			}
+			else {
+				mergeSort(buffer, sortedIndex, 0, sortedIndex.length, comparator);
+			}
+
+			return sortedIndex;
+		});
+	}
+
+	/**
+	 * Returns the comparator of given sort key as created by {@link #getSortKey(Map, Locale, Map)}, including the ties.
+	 */
+	private IndexComparator getComparator(List<Object> sortKey) {
+		Locale locale = (Locale) sortKey.get(0);
+		IndexComparator comparator = (left, right) -> 0;
+
+		for (Object field : sortKey.subList(1, sortKey.size())) {
+			List<?> fieldKey = (List<?>) field;
+			String property = (String) fieldKey.get(0);
+			boolean ascending = (Boolean) fieldKey.get(1);
+			Integer nullSortOrder = (Integer) fieldKey.get(2);
+			int direction = ascending ? 1 : -1;
+			LongColumn longKeys = getLongSortKeys(property).orElse(null);
+
+			if (longKeys != null) {
+				comparator = comparator.thenComparing((left, right) -> compareSortKeys(longKeys, left, right, nullSortOrder) * direction);
+			}
+			else {
+				Object[] keys = getSortKeys(property, ascending, locale, Boolean.TRUE.equals(fieldKey.get(3)));
+				comparator = comparator.thenComparing((left, right) -> compareSortKeys(keys[left], keys[right], nullSortOrder) * direction);
+			}
+		}
+
+		return comparator.thenComparing(idComparator).thenComparing(Integer::compare);
+	}
+
+	/**
+	 * Returns the primitive sort keys of given property if it represents a number, a {@link java.time.LocalDate} or an
+	 * {@link java.time.Instant}. This is computed only once per property.
+	 */
+	private Optional<LongColumn> getLongSortKeys(String property) {
+		return computeIfAbsent(longSortKeyColumns, property, key -> {
+			PropertyPath propertyPath = PropertyPath.of(type, property);
+
+			if (!propertyPath.isResolved() || propertyPath.isCollection() || !(Number.class.isAssignableFrom(propertyPath.getType()) || propertyPath.getType().isPrimitive()
+				|| Temporal.class.isAssignableFrom(propertyPath.getType())))
+			{
+				return Optional.empty();
+			}
+
+			return Optional.ofNullable(LongColumn.of(rows.stream().map(row -> getValue(row, property)).toArray()));
+		});
+	}
+
+	private Object[] getSortKeys(String property, boolean ascending, Locale locale, boolean caseSensitive) {
+		PropertyPath propertyPath = PropertyPath.of(type, property);
+		boolean directional = !propertyPath.isResolved() || propertyPath.isCollection(); // Collection elements are ordered in the direction of the ordering.
+		List<Object> sortKeysKey = asList(property, directional ? ascending : null, locale, caseSensitive);
+
+		return computeIfAbsent(sortKeyColumns, sortKeysKey, key -> {
+			Collator collator = Collator.getInstance(locale);
+			ThreadLocal<Collator> collators = ThreadLocal.withInitial(() -> (Collator) collator.clone()); // Collator is not thread safe.
+			Object[] keys = new Object[rows.size()];
+
+			return parallelIfNecessary(keys.length, parallel -> {
+				parallel(IntStream.range(0, keys.length), parallel).forEach(i -> keys[i] = getSortKey(rows.get(i), key, collators.get()));
+				return keys;
+			});
+		});
+	}
+
+	/**
+	 * Returns the sort key of given row for given key of the sort keys as created by
+	 * {@link #getSortKeys(String, boolean, Locale, boolean)}.
+	 */
+	private Object getSortKey(E row, List<Object> sortKeysKey, Collator collator) {
+		Object value = getValue(row, (String) sortKeysKey.get(0));
+		boolean ascending = !Boolean.FALSE.equals(sortKeysKey.get(1));
+		Locale locale = (Locale) sortKeysKey.get(2);
+		boolean caseSensitive = (Boolean) sortKeysKey.get(3);
+		return toSortKey(value, ascending, collator, caseSensitive, locale);
+	}
+
+	private static Object toSortKey(Object value, boolean ascending, Collator collator, boolean caseSensitive, Locale locale) {
+		if (value == null) {
+			return null;
+		}
+		else if (value instanceof Collection) {
+			return CollectionSortKey.of((Collection<?>) value, element -> toSortKey(element, ascending, collator, caseSensitive, locale), ascending);
+		}
+		else if (value instanceof String) {
+			return collator.getCollationKey(caseSensitive ? (String) value : lower(value, locale));
+		}
+		else if (value instanceof Comparable) {
+			return value;
+		}
+		else {
+			return toSortKey(value.toString(), ascending, collator, caseSensitive, locale);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static int compareSortKeys(Object left, Object right, Integer nullSortOrder) {
+		if (Objects.equals(left, right)) {
+			return 0;
+		}
+		else if (left == null) {
+			return nullSortOrder != null ? nullSortOrder : 1;
+		}
+		else if (right == null) {
+			return nullSortOrder != null ? nullSortOrder : -1;
+		}
+		else {
+			return ((Comparable<Object>) left).compareTo(right);
+		}
+	}
+
+	private static int compareSortKeys(LongColumn keys, int left, int right, Integer nullSortOrder) {
+		boolean leftNull = keys.isNull(left);
+		boolean rightNull = keys.isNull(right);
+
+		if (leftNull && rightNull) {
+			return 0;
+		}
+		else if (leftNull) {
+			return nullSortOrder != null ? nullSortOrder : 1;
+		}
+		else if (rightNull) {
+			return nullSortOrder != null ? nullSortOrder : -1;
+		}
+		else {
+			return Long.compare(keys.get(left), keys.get(right));
+		}
+	}
+
+	/**
+	 * Merge sorts given source range into given destination range. Both must initially contain the same elements.
+	 */
+	static void mergeSort(int[] source, int[] destination, int from, int to, IndexComparator comparator) {
+		if (to - from < INSERTION_SORT_THRESHOLD) {
+			for (int i = from + 1; i < to; i++) {
+				for (int j = i; j > from && comparator.compare(destination[j - 1], destination[j]) > 0; j--) {
+					int swap = destination[j];
+					destination[j] = destination[j - 1];
+					destination[j - 1] = swap;
+				}
+			}
+
+			return;
+		}
+
+		int middle = (from + to) >>> 1;
+		mergeSort(destination, source, from, middle, comparator);
+		mergeSort(destination, source, middle, to, comparator);
+		merge(source, destination, from, middle, to, comparator);
+	}
+
+	private static void merge(int[] source, int[] destination, int from, int middle, int to, IndexComparator comparator) {
+		for (int i = from, left = from, right = middle; i < to; i++) {
+			if (right >= to || (left < middle && comparator.compare(source[left], source[right]) <= 0)) {
+				destination[i] = source[left++];
+			}
+			else {
+				destination[i] = source[right++];
+			}
+		}
+	}
+
+	private int compareIds(int left, int right) {
+		return (longIds != null) ? compareSortKeys(longIds, left, right, null) : compareSortKeys(ids[left], ids[right], null);
+	}
+
+	static int[] retain(int[] sortedIndex, int[] filteredIndex) {
+		BitSet filtered = new BitSet();
+		IntStream.of(filteredIndex).forEach(filtered::set);
+		return IntStream.of(sortedIndex).filter(filtered::get).toArray();
+	}
+
+
+	// Getters --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Returns a snapshot of the rows of this dataset.
+	 * @return The unmodifiable snapshot of the rows of this dataset.
+	 */
+	public List<E> getRows() {
+		lock.readLock().lock();
+
+		try {
+			return unmodifiableList(getLiveRows());
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private List<E> getLiveRows() {
+		return IntStream.of(allIndex).mapToObj(rows::get).collect(toList());
+	}
+
+	/**
+	 * Returns the class of the first non-<code>null</code> row, or <code>null</code> when there is none.
+	 */
+	Class<?> getType() {
+		return type;
+	}
+
+	/**
+	 * Returns whether this dataset is columnar.
+	 */
+	boolean isColumnar() {
+		return columns != null;
+	}
+
+
+	// Lifecycle ------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Unshares all datasets of given servlet context. This is invoked by {@link PagedDataModelListener} when the
+	 * application is destroyed.
+	 */
+	static void unshareAll(ServletContext servletContext) {
+		Map<String, Dataset<?>> sharedDatasets = getSharedDatasets(servletContext, Dataset.class);
+
+		synchronized (sharedDatasets) {
+			sharedDatasets.values().forEach(dataset -> dataset.name = null);
+			sharedDatasets.clear();
+		}
+
+		servletContext.removeAttribute(getSharedDatasetsAttributeName(Dataset.class));
+	}
+
+	/**
+	 * Returns the datasets of given type which are shared in given servlet context, keyed by name.
+	 */
+	@SuppressWarnings("unchecked")
+	static <D> Map<String, D> getSharedDatasets(ServletContext servletContext, Class<?> type) {
+		String attributeName = getSharedDatasetsAttributeName(type);
+
+		synchronized (Dataset.class) {
+			Map<String, D> sharedDatasets = (Map<String, D>) servletContext.getAttribute(attributeName);
+
+			if (sharedDatasets == null) {
+				sharedDatasets = new ConcurrentHashMap<>();
+				servletContext.setAttribute(attributeName, sharedDatasets);
+			}
+
+			return sharedDatasets;
+		}
+	}
+
+	static String getSharedDatasetsAttributeName(Class<?> type) {
+		return type.getName() + ".SHARED";
+	}
+
+	/**
+	 * Returns the servlet context of the current application, also when there's no faces context, such as during
+	 * application startup and during deserialization of the session.
+	 */
+	static ServletContext getServletContext() {
+		return (FacesContext.getCurrentInstance() != null) ? Faces.getServletContext() : Beans.getReference(ServletContext.class);
+	}
+
+	/**
+	 * Shuts down the parallel pool, if any. This is invoked by {@link PagedDataModelListener} when the application is
+	 * destroyed, so that its threads don't hold the application class loader. When a dataset is used afterwards
+	 * anyway, then a new pool is created.
+	 */
+	static void shutdownParallelPool() {
+		synchronized (Dataset.class) {
+			if (parallelPool != null) {
+				parallelPool.shutdownNow();
+				parallelPool = null;
+			}
+		}
+	}
+
+
+	// Serialization --------------------------------------------------------------------------------------------------
+
+	private Object writeReplace() {
+		String sharedName = name;
+		return (sharedName != null) ? new SharedDatasetHandle(sharedName) : new SerializedDataset<>(getRows(), isColumnar());
+	}
+
+	private void readObject(ObjectInputStream input) throws InvalidObjectException {
+		throw new InvalidObjectException("SerializedDataset required");
+	}
+
+	/**
+	 * The serialized form of a dataset, which holds only the rows, so that the indexes are rebuilt on demand.
+	 */
+	private static final class SerializedDataset<E> implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<E> rows;
+		private final boolean columnar;
+
+		private SerializedDataset(List<E> rows, boolean columnar) {
+			this.rows = rows;
+			this.columnar = columnar;
+		}
+
+		private Object readResolve() {
+			return new Dataset<>(rows, columnar);
+		}
+	}
+
+	/**
+	 * The serialized form of a shared dataset, which holds only the name it is shared under.
+	 */
+	private static final class SharedDatasetHandle implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String name;
+
+		private SharedDatasetHandle(String name) {
+			this.name = name;
+		}
+
+		private Object readResolve() throws InvalidObjectException {
+			Dataset<?> dataset = Dataset.<Dataset<?>>getSharedDatasets(getServletContext(), Dataset.class).get(name);
+
+			if (dataset == null) {
+				throw new InvalidObjectException("Dataset is not shared as " + name + ", it must be shared during application startup");
+			}
+
+			return dataset;
+		}
+	}
+
+
+	/**
+	 * The trigram index of a property along with the amount of rows it was built of. The rows added since are not in
+	 * the index and are therefore always candidates.
+	 */
+	private static final class TrigramIndex {
+
+		private final Map<String, int[]> postings;
+		private final int size;
+
+		private TrigramIndex(Map<String, int[]> postings, int size) {
+			this.postings = postings;
+			this.size = size;
+		}
+	}
+
+	/**
+	 * The page of a stream of rows, see {@link Dataset#getPage(Supplier, Page, Locale, Map)}. The criteria are compiled
+	 * once the type of the rows is known, i.e. on the first non-<code>null</code> row. When the page is ordered, then
+	 * the sort keys of a row are computed only when it matches, and the row is only kept when it ranks until the limit
+	 * of the page. Ties are ordered the same way as in a {@link Dataset}.
+	 */
+	private static final class StreamedPage<E> implements Consumer<E> {
+
+		private final Page page;
+		private final Locale locale;
+		private final List<List<?>> ordering;
+		private final int length;
+		private final Comparator<RankedRow<E>> comparator;
+		private final PriorityQueue<RankedRow<E>> heap;
+		private final RankedRow<E> after;
+		private final List<E> rows = new ArrayList<>();
+		private Collator collator;
+		private Class<?> type;
+		private BeanPropertyFilter filter;
+		private int count;
+
+		/**
+		 * When given ranked row is not <code>null</code>, then only the rows ranking after it are kept.
+		 */
+		private StreamedPage(Page page, Locale locale, List<Object> sortKey, RankedRow<E> after) {
+			this.page = page;
+			this.locale = locale;
+			this.ordering = sortKey.subList(1, sortKey.size()).stream().map(field -> (List<?>) field).collect(toList());
+			this.length = (int) Math.min((long) page.getOffset() + page.getLimit(), Integer.MAX_VALUE);
+			this.comparator = ordering.isEmpty() ? null : this::compare;
+			this.heap = ordering.isEmpty() ? null : new PriorityQueue<>(comparator.reversed());
+			this.after = after;
+		}
+
+		@Override
+		public void accept(E row) {
+			if (row != null && type == null) {
+				type = row.getClass();
+				collator = Collator.getInstance(locale);
+				filter = new BeanPropertyFilter(locale, resolvePropertyPaths(type, page.getRequiredCriteria()), resolvePropertyPaths(type, page.getOptionalCriteria()));
+			}
+
+			if (row != null && !filter.matches(row)) {
+				return;
+			}
+
+			int position = count++;
+
+			if (heap == null) {
+				if (position >= page.getOffset() && position < length) {
+					rows.add(row);
+				}
+			}
+			else {
+				RankedRow<E> rankedRow = new RankedRow<>(row, getSortKeys(row), position);
+
+				if (after != null && comparator.compare(rankedRow, after) <= 0) {
+					return;
+				}
+
+				if (heap.size() < length) {
+					heap.add(rankedRow);
+				}
+				else if (comparator.compare(rankedRow, heap.peek()) < 0) {
+					heap.poll();
+					heap.add(rankedRow);
+				}
+			}
+		}
+
+		private Object[] getSortKeys(E row) {
+			Object[] keys = new Object[ordering.size() + 1];
+
+			for (int i = 0; i < ordering.size(); i++) {
+				List<?> field = ordering.get(i);
+				Object value = (row == null) ? null : PropertyPath.of(type, (String) field.get(0)).getValue(row);
+				keys[i] = toSortKey(value, (Boolean) field.get(1), collator, Boolean.TRUE.equals(field.get(3)), locale);
+			}
+
+			keys[ordering.size()] = getComparableId(row);
+			return keys;
+		}
+
+		private int compare(RankedRow<E> left, RankedRow<E> right) {
+			for (int i = 0; i < ordering.size(); i++) {
+				List<?> field = ordering.get(i);
+				int result = compareSortKeys(left.keys[i], right.keys[i], (Integer) field.get(2)) * ((Boolean) field.get(1) ? 1 : -1);
+
+				if (result != 0) {
+					return result;
+				}
+			}
+
+			int result = compareSortKeys(left.keys[ordering.size()], right.keys[ordering.size()], null);
+			return (result != 0) ? result : Integer.compare(left.position, right.position);
+		}
+
+		private Entry<List<E>, Integer> getPage() {
+			if (heap == null) {
+				return new SimpleImmutableEntry<>(rows, count);
+			}
+
+			List<E> page = getRankedRows().stream().skip(this.page.getOffset()).map(rankedRow -> rankedRow.row).collect(toList());
+			return new SimpleImmutableEntry<>(page, count);
+		}
+
+		private List<RankedRow<E>> getRankedRows() {
+			return heap.stream().sorted(comparator).collect(toList());
+		}
+	}
+
+	private static final class RankedRow<E> {
+
+		private final E row;
+		private final Object[] keys;
+		private final int position;
+
+		private RankedRow(E row, Object[] keys, int position) {
+			this.row = row;
+			this.keys = keys;
+			this.position = position;
+		}
+	}
+
+	/**
+	 * Compares rows by their index.
+	 */
+	@FunctionalInterface
+	interface IndexComparator {
+
+		int compare(int left, int right);
+
+		default IndexComparator thenComparing(IndexComparator other) {
+			return (left, right) -> {
+				int result = compare(left, right);
+				return (result != 0) ? result : other.compare(left, right);
+			};
+		}
+	}
+
+	/**
+	 * Parallel version of {@link Dataset#mergeSort(int[], int[], int, int, IndexComparator)}. This must be invoked from
+	 * within the parallel pool.
+	 */
+	private static class MergeSort extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int[] source;
+		private final int[] destination;
+		private final int from;
+		private final int to;
+		private final IndexComparator comparator;
+
+		public MergeSort(int[] source, int[] destination, int from, int to, IndexComparator comparator) {
+			this.source = source;
+			this.destination = destination;
+			this.from = from;
+			this.to = to;
+			this.comparator = comparator;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from < PARALLEL_SORT_GRANULARITY) {
+				mergeSort(source, destination, from, to, comparator);
+				return;
+			}
+
+			int middle = (from + to) >>> 1;
+			invokeAll(new MergeSort(destination, source, from, middle, comparator), new MergeSort(destination, source, middle, to, comparator));
+			merge(source, destination, from, middle, to, comparator);
+		}
+	}
+
+	/**
+	 * Optimized version of PrimeFaces FilterFeature which does not use EL to resolve properties. The criteria are
+	 * compiled only once per filtering into a {@link PropertyMatcher} per property, so that matching a row doesn't need
+	 * to interpret the criteria again.
+	 */
+	private static class BeanPropertyFilter {
+
+		private final PropertyMatcher[] requiredCriteria;
+		private final PropertyMatcher[] optionalCriteria;
+
+		public BeanPropertyFilter(Locale locale, Map<PropertyPath, Entry<String, Object>> requiredCriteria, Map<PropertyPath, Entry<String, Object>> optionalCriteria) {
+			this.requiredCriteria = compile(requiredCriteria, locale);
+			this.optionalCriteria = compile(optionalCriteria, locale);
+		}
+
+		private static PropertyMatcher[] compile(Map<PropertyPath, Entry<String, Object>> criteria, Locale locale) {
+			return criteria.entrySet().stream().map(entry -> new PropertyMatcher(entry.getKey(), entry.getValue().getValue(), locale)).toArray(PropertyMatcher[]::new);
+		}
+
+		public boolean matches(Object entity) {
+			if (entity == null) {
+				return true; // Not our problem.
+			}
+
+			for (PropertyMatcher criteria : requiredCriteria) {
+				if (!criteria.matches(entity)) {
+					return false;
+				}
+			}
+
+			for (PropertyMatcher criteria : optionalCriteria) {
+				if (criteria.matches(entity)) {
+					return true;
+				}
+			}
+
+			return optionalCriteria.length == 0;
+		}
+	}
+
+	/**
+	 * The compiled criteria value of a property. The plain values are put in a hash set along with their lowercased
+	 * string representation, and the {@link Like} values are lowercased beforehand and grouped by their type, so that
+	 * the property value itself needs to be lowercased at most once. Other {@link Criteria} are left to
+	 * {@link Criteria#applies(Object)}.
+	 * <p>
+	 * Note that everything is lowercased in the data locale, also the {@link Like} values, whereas
+	 * {@link Like#applies(Object)} lowercases in the default locale. This is consistent with the trigram indexes and
+	 * bitmap indexes, which are keyed by the data locale as well.
+	 */
+	static final class PropertyMatcher {
+
+		private final PropertyPath propertyPath;
+		private final Locale locale;
+		private final boolean criteria;
+		private final boolean empty;
+		private final Object[] values;
+		private final boolean matchNull;
+		private final Set<Object> plainValues = new HashSet<>();
+		private final Set<String> lowerCasedValues = new HashSet<>();
+		private final String[] prefixes;
+		private final String[] suffixes;
+		private final String[] infixes;
+		private final Criteria<?>[] otherCriteria;
+
+		PropertyMatcher(PropertyPath propertyPath, Object criteriaValue, Locale locale) {
+			this.propertyPath = propertyPath;
+			this.locale = locale;
+			this.criteria = criteriaValue instanceof Criteria;
+			this.empty = isEmpty(criteriaValue);
+			this.values = stream(criteriaValue).toArray();
+
+			List<String> prefixes = new ArrayList<>();
+			List<String> suffixes = new ArrayList<>();
+			List<String> infixes = new ArrayList<>();
+			List<Criteria<?>> otherCriteria = new ArrayList<>();
+			boolean matchNull = false;
+
+			for (Object value : values) {
+				if (value instanceof Like && ((Like) value).getValue() != null) {
+					Like like = (Like) value;
+					(like.startsWith() ? prefixes : like.endsWith() ? suffixes : infixes).add(lower(like.getValue(), locale));
+				}
+				else if (value instanceof Criteria) {
+					otherCriteria.add((Criteria<?>) value);
+				}
+				else if (value == null) {
+					matchNull = true;
+				}
+				else {
+					plainValues.add(value);
+					lowerCasedValues.add(lower(value, locale));
+				}
+			}
+
+			this.matchNull = matchNull;
+			this.prefixes = prefixes.toArray(new String[prefixes.size()]);
+			this.suffixes = suffixes.toArray(new String[suffixes.size()]);
+			this.infixes = infixes.toArray(new String[infixes.size()]);
+			this.otherCriteria = otherCriteria.toArray(new Criteria<?>[otherCriteria.size()]);
+		}
+
+		/**
+		 * A collection property must contain all plain values, else the property must match any of the values.
+		 */
+		public boolean matches(Object entity) {
+			Object propertyValue = propertyPath.getValue(entity);
+
+			if (propertyValue instanceof Collection && !criteria) {
+				if (!empty) {
+					for (Object value : values) {
+						if (!((Collection<?>) propertyValue).contains(value)) {
+							return false;
+						}
+					}
+				}
+
+				return true;
+			}
+
+			return matchesValue(propertyValue);
+		}
+
+		/**
+		 * The property value must match any of the values. This is also used by the {@link MappedDataset}, which doesn't
+		 * have collection properties.
+		 */
+		boolean matchesValue(Object propertyValue) {
+			return matchesAny(propertyValue) || applies(propertyValue);
+		}
+
+		private boolean matchesAny(Object propertyValue) {
+			if (propertyValue == null) {
+				return matchNull;
+			}
+
+			if (plainValues.contains(propertyValue)) {
+				return true;
+			}
+
+			if (lowerCasedValues.isEmpty() && prefixes.length + suffixes.length + infixes.length == 0) {
+				return false;
+			}
+
+			String lowerCasedValue = lower(propertyValue, locale);
+
+			if (lowerCasedValues.contains(lowerCasedValue)) {
+				return true;
+			}
+
+			for (String prefix : prefixes) {
+				if (lowerCasedValue.startsWith(prefix)) {
+					return true;
+				}
+			}
+
+			for (String suffix : suffixes) {
+				if (lowerCasedValue.endsWith(suffix)) {
+					return true;
+				}
+			}
+
+			for (String infix : infixes) {
+				if (lowerCasedValue.contains(infix)) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		private boolean applies(Object propertyValue) {
+			for (Criteria<?> otherCriteria : otherCriteria) {
+				if (otherCriteria.applies(propertyValue)) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+	}
+
+	/**
+	 * The sort key of a collection: the sort keys of its elements, ordered in the direction of the ordering, so that the
+	 * collections are compared by their first element, i.e. the minimum when ascending or the maximum when descending,
+	 * and then by their next elements. This is computed once per row, so that the collection itself is never sorted.
+	 */
+	private static final class CollectionSortKey implements Comparable<CollectionSortKey> {
+
+		private final Object[] keys;
+
+		private CollectionSortKey(Object[] keys) {
+			this.keys = keys;
+		}
+
+		/**
+		 * Returns the sort key of given collection, or <code>null</code> when it's empty. Nested collections are
+		 * flattened.
+		 */
+		static CollectionSortKey of(Collection<?> collection, Function<Object, Object> toSortKey, boolean ascending) {
+			Comparator<Object> comparator = (left, right) -> compareSortKeys(left, right, null);
+			Object[] keys = flatten(collection).map(toSortKey).sorted(ascending ? comparator : comparator.reversed()).toArray();
+			return (keys.length == 0) ? null : new CollectionSortKey(keys);
+		}
+
+		private static Stream<Object> flatten(Collection<?> collection) {
+			return collection.stream().flatMap(element -> (element instanceof Collection) ? flatten((Collection<?>) element) : Stream.of(element));
+		}
+
+		@Override
+		public int compareTo(CollectionSortKey other) {
+			for (int i = 0; i < Math.min(keys.length, other.keys.length); i++) {
+				int result = compareSortKeys(keys[i], other.keys[i], null);
+
+				if (result != 0) {
+					return result;
+				}
+			}
+
+			return Integer.compare(keys.length, other.keys.length);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof CollectionSortKey && Arrays.equals(keys, ((CollectionSortKey) other).keys);
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(keys);
+		}
+	}
+
+
+	// Helpers --------------------------------------------------------------------------------------------------------
+
+	static List<Object> getSortKey(Map<String, Boolean> ordering, Locale locale, Map<String, SortMeta> sortBy) {
+		List<Object> sortKey = new ArrayList<>();
+		sortKey.add(locale);
+
+		for (Entry<String, Boolean> entry : ordering.entrySet()) {
+			SortMeta sortMeta = sortBy.get(entry.getKey());
+			sortKey.add(asList(entry.getKey(), entry.getValue(), (sortMeta != null) ? sortMeta.getNullSortOrder() : null, (sortMeta != null) ? sortMeta.isCaseSensitiveSort() : null));
+		}
+
+		return sortKey;
+	}
+
+	private Object getValue(E row, String property) {
+		return (row == null) ? null : PropertyPath.of(type, property).getValue(row);
+	}
+
+	/**
+	 * Returns the key by which given row is looked up on update and remove: its ID, or else the row itself.
+	 */
+	private static Object getKey(Object row) {
+		Object id = (row instanceof Identifiable) ? ((Identifiable<?>) row).getId() : null;
+		return (id != null) ? id : row;
+	}
+
+	/**
+	 * Returns a copy of given criteria value wherein arrays are replaced by lists, also in nested criteria, so that equal
+	 * criteria, such as the selected values of a column with <code>filterOptions</code>, give an equal key of the cached
+	 * filtered indexes. Arrays only have identity equality.
+	 */
+	private static Object toFilterKey(Object criteriaValue) {
+		if (criteriaValue instanceof Map) {
+			Map<Object, Object> filterKey = new LinkedHashMap<>();
+			((Map<?, ?>) criteriaValue).forEach((key, value) -> filterKey.put(key, toFilterKey(value)));
+			return filterKey;
+		}
+		else if (criteriaValue != null && criteriaValue.getClass().isArray()) {
+			return stream(criteriaValue).map(Dataset::toFilterKey).collect(toList());
+		}
+		else {
+			return criteriaValue;
+		}
+	}
+
+	private static Object getComparableId(Object row) {
+		Object id = (row instanceof Identifiable) ? ((Identifiable<?>) row).getId() : null;
+		return (id instanceof Comparable) ? id : null;
+	}
+
+	/**
+	 * Returns the position in given sorted index at which given position is to be inserted.
+	 */
+	private static int insertionPoint(int[] index, int position, IndexComparator comparator) {
+		int low = 0;
+		int high = index.length;
+
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+
+			if (comparator.compare(index[middle], position) < 0) {
+				low = middle + 1;
+			}
+			else {
+				high = middle;
+			}
+		}
+
+		return low;
+	}
+
+	private static int[] insert(int[] index, int insertionPoint, int position) {
+		int[] result = new int[index.length + 1];
+		System.arraycopy(index, 0, result, 0, insertionPoint);
+		result[insertionPoint] = position;
+		System.arraycopy(index, insertionPoint, result, insertionPoint + 1, index.length - insertionPoint);
+		return result;
+	}
+
+	/**
+	 * Returns given index without given position. This is searched linearly instead of binary, as the array copy is
+	 * linear anyway, and as the sort keys may have been computed again since the row was changed in place.
+	 */
+	private static int[] remove(int[] index, int position) {
+		for (int i = 0; i < index.length; i++) {
+			if (index[i] == position) {
+				int[] result = new int[index.length - 1];
+				System.arraycopy(index, 0, result, 0, i);
+				System.arraycopy(index, i + 1, result, i, result.length - i);
+				return result;
+			}
+		}
+
+		return index;
+	}
+
+	private static Object[] set(Object[] array, int index, Object value) {
+		Object[] result = (index < array.length) ? array : Arrays.copyOf(array, DatasetColumn.grow(array.length, index + 1));
+		result[index] = value;
+		return result;
+	}
+
+	/**
+	 * Removes the entries matching given predicate from given synchronized cache.
+	 */
+	private static <K, V> void removeIf(Map<K, V> cache, BiPredicate<K, V> predicate) {
+		synchronized (cache) {
+			cache.entrySet().removeIf(entry -> predicate.test(entry.getKey(), entry.getValue()));
+		}
+	}
+
+	/**
+	 * Runs given task on the parallel pool when given size reaches the parallel threshold, else on the current thread.
+	 * The pool is shared and bounded to half of the available processors, so that large tables can't starve the node.
+	 */
+	private <T> T parallelIfNecessary(int size, Function<Boolean, T> task) {
+		if (size < parallelThreshold) {
+			return task.apply(false);
+		}
+
+		return getParallelPool().submit(() -> task.apply(true)).join();
+	}
+
+	/**
+	 * Returns the parallel pool, creating it on first use. Its threads are daemon threads, so that they never block
+	 * the shutdown of the JVM.
+	 */
+	private static ForkJoinPool getParallelPool() {
+		ForkJoinPool pool = parallelPool;
+
+		if (pool == null) {
+			synchronized (Dataset.class) {
+				pool = parallelPool;
+
+				if (pool == null) {
+					pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() / 2), Dataset::newParallelThread, null, false);
+					parallelPool = pool;
+				}
+			}
+		}
+
+		return pool;
+	}
+
+	private static ForkJoinWorkerThread newParallelThread(ForkJoinPool pool) {
+		ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+		thread.setName(PARALLEL_THREAD_NAME_PREFIX + thread.getPoolIndex());
+		thread.setDaemon(true);
+		return thread;
+	}
+
+	/**
+	 * Reads the context parameters as configured in the current faces context, if any. This is done on every page
+	 * instead of on construction, because the dataset may be created when there's no faces context, e.g. during
+	 * application startup.
+	 */
+	private void readInitParameters() {
+		FacesContext context = FacesContext.getCurrentInstance();
+
+		if (context != null) {
+			parallelThreshold = parseInitParameter(context.getExternalContext(), PARAM_NAME_PARALLEL_THRESHOLD, DEFAULT_PARALLEL_THRESHOLD);
+			topKRatio = Math.max(1, parseInitParameter(context.getExternalContext(), PARAM_NAME_TOP_K_RATIO, DEFAULT_TOP_K_RATIO));
+		}
+	}
+
+	private static IntStream parallel(IntStream stream, boolean parallel) {
+		return parallel ? stream.parallel() : stream;
+	}
+
+	private static <T> Map<PropertyPath, Entry<String, T>> resolvePropertyPaths(Class<?> type, Map<String, T> properties) {
+		Map<PropertyPath, Entry<String, T>> propertyPaths = new LinkedHashMap<>();
+
+		for (Entry<String, T> entry : properties.entrySet()) {
+			propertyPaths.put(PropertyPath.of(type, entry.getKey()), entry);
+		}
+
+		return propertyPaths;
+	}
+
+	/**
+	 * Like {@link Map#computeIfAbsent(Object, Function)}, but without holding the lock of the synchronized cache during
+	 * the computation, so that a shared dataset doesn't block other users while computing an index. In the worst case
+	 * the same value is computed twice, whereafter the first one wins.
+	 */
+	static <K, V> V computeIfAbsent(Map<K, V> cache, K key, Function<K, V> computer) {
+		V value = cache.get(key);
+
+		if (value == null) {
+			V computedValue = computer.apply(key);
+			value = cache.putIfAbsent(key, computedValue);
+
+			if (value == null) {
+				value = computedValue;
+			}
+		}
+
+		return value;
+	}
+
+	static <K, V> Map<K, V> newCache(int maxSize) {
+		return synchronizedMap(new LinkedHashMap<K, V>(maxSize, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Entry<K, V> eldest) {
+				return size() > maxSize;
+			}
+		});
+	}
+
+	/**
+	 * Returns the distinct trigrams of given string, lowercased in given locale as {@link Like} is case insensitive. The
+	 * locale must be the same as the one of the {@link PropertyMatcher}, else the trigrams of e.g. a Turkish dotted
+	 * capital I wouldn't match.
+	 */
+	private static Set<String> getTrigrams(String string, Locale locale) {
+		String lowerCased = lower(string, locale);
+		Set<String> trigrams = new HashSet<>();
+
+		for (int i = 0; i + TRIGRAM_LENGTH <= lowerCased.length(); i++) {
+			trigrams.add(lowerCased.substring(i, i + TRIGRAM_LENGTH));
+		}
+
+		return trigrams;
+	}
+
+	private static int[] intersect(int[] left, int[] right) {
+		int[] intersection = new int[Math.min(left.length, right.length)];
+		int length = 0;
+
+		for (int l = 0, r = 0; l < left.length && r < right.length;) {
+			if (left[l] < right[r]) {
+				l++;
+			}
+			else if (left[l] > right[r]) {
+				r++;
+			}
+			else {
+				intersection[length++] = left[l];
+				l++;
+				r++;
+			}
+		}
+
+		return Arrays.copyOf(intersection, length);
+	}
+
+	private static String lower(Object value, Locale locale) {
+		return value == null ? null : value.toString().toLowerCase(locale);
+	}
+
+}
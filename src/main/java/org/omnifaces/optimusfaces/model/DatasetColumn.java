@@ -0,0 +1,419 @@
+/*
+ * Copyright OmniFaces
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.optimusfaces.model;
+
+import static org.omnifaces.utils.stream.Streams.stream;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.function.LongFunction;
+import java.util.function.ToLongFunction;
+
+import org.omnifaces.persistence.criteria.Criteria;
+import org.omnifaces.persistence.criteria.Like;
+
+/**
+ * <p>
+ * A property of all rows of a {@link Dataset}, extracted only once into a typed array, so that criteria can be matched
+ * against the array instead of invoking the getters of every row over and over. Integral numbers, floating point
+ * numbers, {@link LocalDate} and {@link Instant} are extracted into a <code>long[]</code>, enums into an
+ * <code>int[]</code> of ordinals and strings into a <code>String[]</code> of lowercased values.
+ * <p>
+ * Criteria are compiled into an {@link IntPredicate} on the row index with the same outcome as the criteria matching of
+ * the {@link Dataset}. Criteria which can't be compiled, such as a {@link Criteria} other than {@link Like}, are left to
+ * the {@link Dataset}.
+ *
+ * @see Dataset
+ * @author Bauke Scholtz
+ */
+abstract class DatasetColumn {
+
+	// Constants ------------------------------------------------------------------------------------------------------
+
+	private static final Map<Class<?>, Class<?>> WRAPPER_TYPES = new HashMap<>();
+	private static final Map<Class<?>, ToLongFunction<Object>> LONG_ENCODERS = new HashMap<>();
+	private static final Map<Class<?>, LongFunction<Object>> LONG_DECODERS = new HashMap<>();
+	private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+	static {
+		WRAPPER_TYPES.put(long.class, Long.class);
+		WRAPPER_TYPES.put(int.class, Integer.class);
+		WRAPPER_TYPES.put(short.class, Short.class);
+		WRAPPER_TYPES.put(byte.class, Byte.class);
+		WRAPPER_TYPES.put(double.class, Double.class);
+		WRAPPER_TYPES.put(float.class, Float.class);
+
+		LONG_ENCODERS.put(Long.class, value -> (Long) value);
+		LONG_ENCODERS.put(Integer.class, value -> (Integer) value);
+		LONG_ENCODERS.put(Short.class, value -> (Short) value);
+		LONG_ENCODERS.put(Byte.class, value -> (Byte) value);
+		LONG_ENCODERS.put(Double.class, value -> encode((Double) value));
+		LONG_ENCODERS.put(Float.class, value -> encode((Float) value));
+		LONG_ENCODERS.put(LocalDate.class, value -> ((LocalDate) value).toEpochDay());
+		LONG_ENCODERS.put(Instant.class, value -> encode((Instant) value));
+
+		LONG_DECODERS.put(Long.class, value -> value);
+		LONG_DECODERS.put(Integer.class, value -> (int) value);
+		LONG_DECODERS.put(Short.class, value -> (short) value);
+		LONG_DECODERS.put(Byte.class, value -> (byte) value);
+		LONG_DECODERS.put(Double.class, value -> decodeDouble(value));
+		LONG_DECODERS.put(Float.class, value -> (float) decodeDouble(value));
+		LONG_DECODERS.put(LocalDate.class, LocalDate::ofEpochDay);
+		LONG_DECODERS.put(Instant.class, value -> Instant.ofEpochSecond(Math.floorDiv(value, NANOS_PER_SECOND), Math.floorMod(value, NANOS_PER_SECOND)));
+	}
+
+	private static final DatasetColumn UNSUPPORTED = new DatasetColumn() {
+		@Override
+		IntPredicate compile(Object criteriaValue, Locale locale) {
+			return null;
+		}
+
+		@Override
+		boolean set(int index, Object value) {
+			return true;
+		}
+	};
+
+
+	// Constructors ---------------------------------------------------------------------------------------------------
+
+	/**
+	 * Extracts given property of given rows. If the property can't be extracted into a typed array, e.g. because it
+	 * represents a collection or because its type is not supported, then a column which doesn't compile any criteria is
+	 * returned.
+	 */
+	static DatasetColumn of(List<?> rows, PropertyPath propertyPath, Locale locale) {
+		if (!propertyPath.isResolved() || propertyPath.isCollection()) {
+			return UNSUPPORTED;
+		}
+
+		Class<?> type = WRAPPER_TYPES.getOrDefault(propertyPath.getType(), propertyPath.getType());
+		Object[] values = rows.stream().map(row -> (row == null) ? null : propertyPath.getValue(row)).toArray();
+
+		try {
+			if (LONG_ENCODERS.containsKey(type)) {
+				return new LongColumn(values, type);
+			}
+			else if (type.isEnum()) {
+				return new EnumColumn(values, type);
+			}
+			else if (type == String.class) {
+				return new StringColumn(values, locale);
+			}
+		}
+		catch (ClassCastException | ArithmeticException notExtractable) {
+			// Value of a subclass or an Instant too far away to fit in nanoseconds. Just let the Dataset handle it.
+		}
+
+		return UNSUPPORTED;
+	}
+
+
+	// Actions --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Returns the predicate on the row index matching given criteria value, or <code>null</code> when given criteria
+	 * value can't be compiled for this column. Rows which are <code>null</code> themselves are not to be tested.
+	 */
+	abstract IntPredicate compile(Object criteriaValue, Locale locale);
+
+	/**
+	 * Sets given property value at given row index, growing the column when necessary. Returns <code>false</code> when
+	 * given value can't be extracted into this column, in which case the column must not be used anymore.
+	 */
+	abstract boolean set(int index, Object value);
+
+
+	// Helpers --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Returns whether given criteria value consists of plain values only, i.e. no {@link Criteria}.
+	 */
+	static boolean isPlain(Object criteriaValue) {
+		return stream(criteriaValue).noneMatch(Criteria.class::isInstance);
+	}
+
+	/**
+	 * Encodes given double such that the signed order of the long is the same as {@link Double#compare(double, double)}.
+	 */
+	static long encode(double value) {
+		long bits = Double.doubleToLongBits(value);
+		return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+	}
+
+	private static double decodeDouble(long value) {
+		return Double.longBitsToDouble(value ^ ((value >> 63) & Long.MAX_VALUE)); // The encoding is its own inverse.
+	}
+
+	private static long encode(Instant value) {
+		return Math.addExact(Math.multiplyExact(value.getEpochSecond(), NANOS_PER_SECOND), value.getNano());
+	}
+
+	/**
+	 * Returns the wrapper type of given type when its values can be encoded into a <code>long</code>, else
+	 * <code>null</code>.
+	 */
+	static Class<?> getLongType(Class<?> type) {
+		Class<?> wrapperType = WRAPPER_TYPES.getOrDefault(type, type);
+		return LONG_ENCODERS.containsKey(wrapperType) ? wrapperType : null;
+	}
+
+	/**
+	 * Encodes given non-<code>null</code> value of a type as returned by {@link #getLongType(Class)} into a
+	 * <code>long</code>, such that the signed order of the long is the same as the natural order of the value.
+	 * @throws ArithmeticException When an {@link Instant} is too far away to fit in nanoseconds.
+	 */
+	static long toLong(Object value) {
+		return LONG_ENCODERS.get(value.getClass()).applyAsLong(value);
+	}
+
+	/**
+	 * Decodes given <code>long</code> as encoded by {@link #toLong(Object)} back into a value of given type.
+	 */
+	static Object fromLong(long value, Class<?> type) {
+		return LONG_DECODERS.get(type).apply(value);
+	}
+
+	/**
+	 * Returns the new length of an array of given length which needs to have at least given minimum length.
+	 */
+	static int grow(int length, int minLength) {
+		return Math.max(minLength, length + (length >> 1));
+	}
+
+	private static String lower(Object value, Locale locale) {
+		return value == null ? null : value.toString().toLowerCase(locale);
+	}
+
+
+	// Nested classes -------------------------------------------------------------------------------------------------
+
+	/**
+	 * A column of values which are encoded into a <code>long</code> such that their signed order is the same as their
+	 * natural order. This is also used by the {@link Dataset} to sort on primitive keys.
+	 */
+	static final class LongColumn extends DatasetColumn {
+
+		private final Class<?> type;
+		private final BitSet nulls;
+		private long[] values;
+
+		/**
+		 * Returns the column of given values, or <code>null</code> when they are not all <code>null</code> or of the same
+		 * supported type, or when an {@link Instant} is too far away to fit in nanoseconds.
+		 */
+		static LongColumn of(Object[] values) {
+			Class<?> type = Arrays.stream(values).filter(Objects::nonNull).map(Object::getClass).findFirst().orElse(null);
+
+			if (!LONG_ENCODERS.containsKey(type)) {
+				return null;
+			}
+
+			try {
+				return new LongColumn(values, type);
+			}
+			catch (ClassCastException | ArithmeticException notExtractable) {
+				return null;
+			}
+		}
+
+		private LongColumn(Object[] values, Class<?> type) {
+			ToLongFunction<Object> encoder = LONG_ENCODERS.get(type);
+			this.type = type;
+			this.values = new long[values.length];
+			this.nulls = new BitSet(values.length);
+
+			for (int i = 0; i < values.length; i++) {
+				if (values[i] == null) {
+					nulls.set(i);
+				}
+				else if (values[i].getClass() != type) {
+					throw new ClassCastException(values[i].getClass().getName());
+				}
+				else {
+					this.values[i] = encoder.applyAsLong(values[i]);
+				}
+			}
+		}
+
+		/**
+		 * Only plain values of exactly the type of this column are compiled, others are left to the Dataset as their
+		 * string representation may still match.
+		 */
+		@Override
+		IntPredicate compile(Object criteriaValue, Locale locale) {
+			if (!isPlain(criteriaValue) || !stream(criteriaValue).allMatch(value -> value == null || value.getClass() == type)) {
+				return null;
+			}
+
+			ToLongFunction<Object> encoder = LONG_ENCODERS.get(type);
+			boolean matchNull = stream(criteriaValue).anyMatch(Objects::isNull);
+			long[] matches = stream(criteriaValue).filter(Objects::nonNull).mapToLong(encoder).sorted().toArray();
+			return i -> nulls.get(i) ? matchNull : Arrays.binarySearch(matches, values[i]) >= 0;
+		}
+
+		@Override
+		boolean set(int index, Object value) {
+			if (value != null && value.getClass() != type) {
+				return false;
+			}
+
+			long encoded;
+
+			try {
+				encoded = (value == null) ? 0 : LONG_ENCODERS.get(type).applyAsLong(value);
+			}
+			catch (ArithmeticException tooFarAway) {
+				return false;
+			}
+
+			if (index >= values.length) {
+				values = Arrays.copyOf(values, grow(values.length, index + 1));
+			}
+
+			values[index] = encoded;
+			nulls.set(index, value == null);
+			return true;
+		}
+
+		boolean isNull(int index) {
+			return nulls.get(index);
+		}
+
+		long get(int index) {
+			return values[index];
+		}
+	}
+
+	private static final class EnumColumn extends DatasetColumn {
+
+		private final Class<?> type;
+		private final Enum<?>[] constants;
+		private int[] ordinals;
+
+		private EnumColumn(Object[] values, Class<?> type) {
+			this.type = type;
+			this.constants = (Enum<?>[]) type.getEnumConstants();
+			this.ordinals = new int[values.length];
+
+			for (int i = 0; i < values.length; i++) {
+				ordinals[i] = (values[i] == null) ? -1 : ((Enum<?>) type.cast(values[i])).ordinal();
+			}
+		}
+
+		/**
+		 * Plain values are resolved to the matching ordinals once, by equality or else by lowercased string
+		 * representation.
+		 */
+		@Override
+		IntPredicate compile(Object criteriaValue, Locale locale) {
+			if (!isPlain(criteriaValue)) {
+				return null;
+			}
+
+			boolean matchNull = stream(criteriaValue).anyMatch(Objects::isNull);
+			boolean[] matches = new boolean[constants.length];
+
+			for (Enum<?> constant : constants) {
+				matches[constant.ordinal()] = stream(criteriaValue).anyMatch(value -> Objects.equals(constant, value) || Objects.equals(lower(constant, locale), lower(value, locale)));
+			}
+
+			return i -> (ordinals[i] < 0) ? matchNull : matches[ordinals[i]];
+		}
+
+		@Override
+		boolean set(int index, Object value) {
+			if (value != null && !type.isInstance(value)) {
+				return false;
+			}
+
+			if (index >= ordinals.length) {
+				ordinals = Arrays.copyOf(ordinals, grow(ordinals.length, index + 1));
+			}
+
+			ordinals[index] = (value == null) ? -1 : ((Enum<?>) value).ordinal();
+			return true;
+		}
+	}
+
+	private static final class StringColumn extends DatasetColumn {
+
+		private final Locale locale;
+		private String[] values;
+
+		private StringColumn(Object[] values, Locale locale) {
+			this.locale = locale;
+			this.values = new String[values.length];
+
+			for (int i = 0; i < values.length; i++) {
+				this.values[i] = lower((String) values[i], locale);
+			}
+		}
+
+		/**
+		 * Plain values are matched by lowercased string representation and {@link Like} criteria by lowercased
+		 * substring.
+		 */
+		@Override
+		IntPredicate compile(Object criteriaValue, Locale locale) {
+			if (!stream(criteriaValue).allMatch(value -> !(value instanceof Criteria) || (value instanceof Like && ((Like) value).getValue() != null))) {
+				return null;
+			}
+
+			Set<String> plainValues = new HashSet<>();
+			IntPredicate likeMatches = i -> false;
+
+			for (Object value : (Iterable<?>) stream(criteriaValue)::iterator) {
+				if (value instanceof Like) {
+					Like like = (Like) value;
+					String search = lower(like.getValue(), locale);
+					IntPredicate likeMatch = like.startsWith() ? (i -> values[i] != null && values[i].startsWith(search))
+						: like.endsWith() ? (i -> values[i] != null && values[i].endsWith(search))
+						: (i -> values[i] != null && values[i].contains(search));
+					likeMatches = likeMatches.or(likeMatch);
+				}
+				else {
+					plainValues.add(lower(value, locale));
+				}
+			}
+
+			IntPredicate anyLikeMatches = likeMatches;
+			return plainValues.isEmpty() ? anyLikeMatches : (i -> plainValues.contains(values[i]) || anyLikeMatches.test(i));
+		}
+
+		@Override
+		boolean set(int index, Object value) {
+			if (value != null && !(value instanceof String)) {
+				return false;
+			}
+
+			if (index >= values.length) {
+				values = Arrays.copyOf(values, grow(values.length, index + 1));
+			}
+
+			values[index] = lower(value, locale);
+			return true;
+		}
+	}
+
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright OmniFaces
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.optimusfaces.model;
+
+import static java.lang.Math.min;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.logging.Level.WARNING;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * <p>
+ * A background export job of an <code>&lt;op:dataTable exportMode="background"&gt;</code>. It writes the export to a
+ * temporary file, which can be downloaded once the job is done. Running jobs are capped per user and per node, see
+ * {@link #PARAM_NAME_MAX_JOBS_PER_USER} and {@link #PARAM_NAME_MAX_JOBS_PER_NODE}. Finished jobs which are not
+ * downloaded within an hour are removed along with their file whenever a job is submitted or downloaded. Jobs of a
+ * destroyed session are removed as soon as they are finished, and all jobs are removed when the application is
+ * destroyed.
+ *
+ * @see PagedDataModel
+ * @author Bauke Scholtz
+ */
+public final class ExportJob {
+
+	// Constants ------------------------------------------------------------------------------------------------------
+
+	private static final Logger logger = Logger.getLogger(ExportJob.class.getName());
+
+	/** The context parameter name to specify the maximum amount of running export jobs per user. Defaults to 1. */
+	public static final String PARAM_NAME_MAX_JOBS_PER_USER = "org.omnifaces.optimusfaces.EXPORT_MAX_JOBS_PER_USER";
+
+	/** The context parameter name to specify the maximum amount of running export jobs per node. Defaults to 4. */
+	public static final String PARAM_NAME_MAX_JOBS_PER_NODE = "org.omnifaces.optimusfaces.EXPORT_MAX_JOBS_PER_NODE";
+
+	static final int DEFAULT_MAX_JOBS_PER_USER = 1;
+	static final int DEFAULT_MAX_JOBS_PER_NODE = 4;
+
+	private static final long EXPIRY_IN_MILLIS = HOURS.toMillis(1);
+	private static final String TEMP_FILE_PREFIX = "optimusfaces-export-";
+	private static final Map<String, ExportJob> JOBS = new ConcurrentHashMap<>();
+
+
+	// Properties -----------------------------------------------------------------------------------------------------
+
+	/** The status of the export job. */
+	public enum Status {
+
+		/** The export job is running. */
+		RUNNING,
+
+		/** The export job is done and the file can be downloaded. */
+		DONE,
+
+		/** The export job has failed. */
+		FAILED,
+
+		/** The export job was not started because too many export jobs are already running. */
+		REJECTED;
+	}
+
+	/**
+	 * The task of the export job.
+	 */
+	@FunctionalInterface
+	interface Task {
+		void run(ExportJob job, OutputStream output) throws IOException;
+	}
+
+	private final String id;
+	private final String owner;
+	private final String sessionId;
+	private final String filename;
+	private final long estimatedRowCount;
+	private final AtomicLong rowCount;
+	private Path file;
+	private volatile Status status;
+	private volatile long finished;
+	private volatile boolean orphaned;
+
+
+	// Constructors ---------------------------------------------------------------------------------------------------
+
+	private ExportJob(String owner, String sessionId, String filename, long estimatedRowCount, Status status) {
+		this.id = UUID.randomUUID().toString();
+		this.owner = owner;
+		this.sessionId = sessionId;
+		this.filename = filename;
+		this.estimatedRowCount = estimatedRowCount;
+		this.rowCount = new AtomicLong();
+		this.status = status;
+	}
+
+
+	// Actions --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Submit a new export job to given executor, unless too many export jobs are already running for given owner or on
+	 * this node. In that case the returned job has status {@link Status#REJECTED} and is not registered. The task must
+	 * not read any mutable state of the paged data model, it runs in background.
+	 */
+	static ExportJob submit(String owner, String sessionId, String filename, long estimatedRowCount, int maxJobsPerUser, int maxJobsPerNode, Executor executor, Task task) {
+		ExportJob job = register(owner, sessionId, filename, estimatedRowCount, maxJobsPerUser, maxJobsPerNode);
+
+		if (job.isRunning()) {
+			try {
+				executor.execute(() -> job.run(task));
+			}
+			catch (RejectedExecutionException e) {
+				job.remove();
+				return new ExportJob(owner, sessionId, filename, estimatedRowCount, Status.REJECTED);
+			}
+		}
+
+		return job;
+	}
+
+	private static synchronized ExportJob register(String owner, String sessionId, String filename, long estimatedRowCount, int maxJobsPerUser, int maxJobsPerNode) {
+		removeExpiredJobs();
+
+		long runningJobsOfOwner = JOBS.values().stream().filter(job -> job.isRunning() && job.owner.equals(owner)).count();
+		long runningJobs = JOBS.values().stream().filter(ExportJob::isRunning).count();
+
+		if (runningJobsOfOwner >= maxJobsPerUser || runningJobs >= maxJobsPerNode) {
+			return new ExportJob(owner, sessionId, filename, estimatedRowCount, Status.REJECTED);
+		}
+
+		ExportJob job = new ExportJob(owner, sessionId, filename, estimatedRowCount, Status.RUNNING);
+
+		try {
+			job.file = Files.createTempFile(TEMP_FILE_PREFIX, "-" + job.id);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		JOBS.put(job.id, job);
+		return job;
+	}
+
+	private void run(Task task) {
+		try (OutputStream output = Files.newOutputStream(file)) {
+			task.run(this, output);
+			status = Status.DONE;
+		}
+		catch (Exception e) {
+			logger.log(WARNING, "Export job " + id + " has failed.", e);
+			status = Status.FAILED;
+		}
+		finally {
+			finished = System.currentTimeMillis();
+
+			if (orphaned) {
+				remove();
+			}
+		}
+	}
+
+	/**
+	 * Returns the export job of given ID, or <code>null</code> if there is none.
+	 */
+	static ExportJob get(String id) {
+		return (id == null) ? null : JOBS.get(id);
+	}
+
+	/**
+	 * Unregister this export job and delete its file.
+	 */
+	void remove() {
+		JOBS.remove(id);
+
+		try {
+			if (file != null) {
+				Files.deleteIfExists(file);
+			}
+		}
+		catch (IOException e) {
+			logger.log(WARNING, "Cannot delete file of export job " + id + ".", e);
+		}
+	}
+
+	void addRowCount(int rowCount) {
+		this.rowCount.addAndGet(rowCount);
+	}
+
+	/**
+	 * Remove finished jobs which are not downloaded within the expiry time.
+	 */
+	static void removeExpiredJobs() {
+		long now = System.currentTimeMillis();
+		JOBS.values().stream().filter(job -> !job.isRunning() && now - job.finished > EXPIRY_IN_MILLIS).forEach(ExportJob::remove);
+	}
+
+	/**
+	 * Remove the jobs of given session. Running jobs are removed as soon as they are finished.
+	 */
+	static void removeJobsOfSession(String sessionId) {
+		JOBS.values().stream().filter(job -> job.sessionId.equals(sessionId)).forEach(ExportJob::removeWhenFinished);
+	}
+
+	/**
+	 * Remove all jobs. Running jobs are removed as soon as they are finished.
+	 */
+	static void removeAllJobs() {
+		JOBS.values().forEach(ExportJob::removeWhenFinished);
+	}
+
+	private void removeWhenFinished() {
+		orphaned = true;
+
+		if (!isRunning()) {
+			remove();
+		}
+	}
+
+
+	// Getters --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Returns the ID of this export job.
+	 * @return The ID of this export job.
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * Returns the filename of the export.
+	 * @return The filename of the export.
+	 */
+	public String getFilename() {
+		return filename;
+	}
+
+	/**
+	 * Returns the file of the export. This is only complete when the job is done.
+	 * @return The file of the export.
+	 */
+	Path getFile() {
+		return file;
+	}
+
+	/**
+	 * Returns the status of this export job.
+	 * @return The status of this export job.
+	 */
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * Returns the amount of rows written so far.
+	 * @return The amount of rows written so far.
+	 */
+	public long getRowCount() {
+		return rowCount.get();
+	}
+
+	/**
+	 * Returns the progress in percent, based on the estimated total number of rows.
+	 * @return The progress in percent.
+	 */
+	public int getProgress() {
+		if (status == Status.DONE) {
+			return 100;
+		}
+
+		return (estimatedRowCount <= 0) ? 0 : (int) min(99, rowCount.get() * 100 / estimatedRowCount);
+	}
+
+	/**
+	 * Returns whether this export job is running.
+	 * @return Whether this export job is running.
+	 */
+	public boolean isRunning() {
+		return status == Status.RUNNING;
+	}
+
+	/**
+	 * Returns whether this export job is done and the file can be downloaded.
+	 * @return Whether this export job is done and the file can be downloaded.
+	 */
+	public boolean isDone() {
+		return status == Status.DONE;
+	}
+
+	/**
+	 * Returns whether this export job has failed.
+	 * @return Whether this export job has failed.
+	 */
+	public boolean isFailed() {
+		return status == Status.FAILED;
+	}
+
+	/**
+	 * Returns whether this export job was not started because too many export jobs are already running.
+	 * @return Whether this export job was not started because too many export jobs are already running.
+	 */
+	public boolean isRejected() {
+		return status == Status.REJECTED;
+	}
+
+}
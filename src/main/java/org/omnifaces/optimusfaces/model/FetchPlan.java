@@ -0,0 +1,222 @@
+/*
+ * Copyright OmniFaces
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.optimusfaces.model;
+
+import static java.util.Collections.emptySet;
+import static java.util.Collections.unmodifiableSet;
+import static javax.persistence.criteria.JoinType.LEFT;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import javax.persistence.criteria.AbstractQuery;
+import javax.persistence.criteria.Fetch;
+import javax.persistence.criteria.FetchParent;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.ManagedType;
+import javax.persistence.metamodel.PluralAttribute;
+import javax.persistence.metamodel.SingularAttribute;
+import javax.persistence.metamodel.Type;
+
+/**
+ * <p>
+ * The fetch plan of a lazy loaded <code>&lt;op:dataTable&gt;</code>. It holds the <code>field</code> paths of the
+ * columns of the table, so that the loader can fetch the relationships needed to render the page in the very same
+ * query, instead of lazily loading them per row during rendering.
+ * <p>
+ * Use {@link PagedDataModel#lazyWithFetchPlan(PagedDataModel.FetchingPartialResultListLoader)} to get it passed to
+ * the loader and apply it via {@link #fetch(AbstractQuery, Root)} in the query builder of your entity service.
+ * <pre>
+ * public PartialResultList&lt;YourEntity&gt; getPageWithFetchPlan(Page page, boolean count, FetchPlan fetchPlan) {
+ *     return getPage(page, count, (criteriaBuilder, query, root) -&gt; {
+ *         fetchPlan.fetch(query, root);
+ *     });
+ * }
+ * </pre>
+ *
+ * @see PagedDataModel
+ * @author Bauke Scholtz
+ */
+public final class FetchPlan implements Serializable {
+
+	// Constants ------------------------------------------------------------------------------------------------------
+
+	private static final long serialVersionUID = 1L;
+
+	/** Use this if you don't want to fetch anything. */
+	public static final FetchPlan NONE = new FetchPlan(emptySet());
+
+
+	// Properties -----------------------------------------------------------------------------------------------------
+
+	private final Set<String> fieldPaths;
+
+
+	// Constructors ---------------------------------------------------------------------------------------------------
+
+	private FetchPlan(Set<String> fieldPaths) {
+		this.fieldPaths = unmodifiableSet(fieldPaths);
+	}
+
+	/**
+	 * Returns the fetch plan of given field paths.
+	 * @param fieldPaths The field paths, such as <code>address.city</code> or <code>phones.number</code>.
+	 * @return The fetch plan of given field paths.
+	 */
+	public static FetchPlan of(Collection<String> fieldPaths) {
+		return fieldPaths.isEmpty() ? NONE : new FetchPlan(new LinkedHashSet<>(fieldPaths));
+	}
+
+
+	// Actions --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Fetch all relationships represented by the field paths of this fetch plan on given root, using a LEFT join.
+	 * Already existing fetches are reused. Walking a field path stops at the first attribute which is not a
+	 * relationship, such as a basic, embedded or transient property.
+	 * <p>
+	 * At most one to-many relationship is fetched, which is the one already fetched by the query builder, or else the
+	 * first one in the order of the field paths, wherein the lazy paged data model puts those of visible columns
+	 * first. Fetching more than one would multiply the rows of the result with
+	 * each other, and Hibernate even refuses to fetch more than one <code>List</code> with a
+	 * <code>MultipleBagFetchException</code>. Walking the field path of any other to-many relationship stops right
+	 * before it, so that it's lazily loaded during rendering instead. Configure batch fetching in the provider, such as
+	 * <code>hibernate.default_batch_fetch_size</code>, in order to load those of the whole page in a single query.
+	 * <p>
+	 * Nothing is fetched when given query doesn't select the entity of given root, such as the count query, which is
+	 * built by the same query builder, because a fetch without its owner in the select clause is invalid.
+	 * @param query The query to fetch the relationships in.
+	 * @param root The root of the query to fetch the relationships on.
+	 */
+	public void fetch(AbstractQuery<?> query, Root<?> root) {
+		if (!root.getJavaType().isAssignableFrom(query.getResultType())) {
+			return;
+		}
+
+		boolean collectionFetched = hasCollectionFetch(root);
+
+		for (String fieldPath : fieldPaths) {
+			FetchParent<?, ?> parent = root;
+			ManagedType<?> type = root.getModel();
+
+			for (String attributeName : fieldPath.split("\\.")) {
+				Attribute<?, ?> attribute = getAttribute(type, attributeName);
+
+				if (attribute == null || !(attribute.isAssociation() || attribute.isCollection())) {
+					break;
+				}
+
+				Fetch<?, ?> fetch = getFetch(parent, attributeName);
+
+				if (fetch == null) {
+					if (attribute.isCollection()) {
+						if (collectionFetched) {
+							break;
+						}
+
+						collectionFetched = true;
+					}
+
+					fetch = parent.fetch(attributeName, LEFT);
+				}
+
+				parent = fetch;
+				type = getManagedType(attribute);
+			}
+		}
+	}
+
+
+	// Getters --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Returns the field paths of this fetch plan.
+	 * @return The field paths of this fetch plan.
+	 */
+	public Set<String> getFieldPaths() {
+		return fieldPaths;
+	}
+
+	/**
+	 * Returns whether this fetch plan is empty.
+	 * @return Whether this fetch plan is empty.
+	 */
+	public boolean isEmpty() {
+		return fieldPaths.isEmpty();
+	}
+
+
+	// Object overrides -----------------------------------------------------------------------------------------------
+
+	@Override
+	public boolean equals(Object object) {
+		return object == this || (object instanceof FetchPlan && fieldPaths.equals(((FetchPlan) object).fieldPaths));
+	}
+
+	@Override
+	public int hashCode() {
+		return fieldPaths.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return "FetchPlan" + fieldPaths;
+	}
+
+
+	// Helpers --------------------------------------------------------------------------------------------------------
+
+	private static Attribute<?, ?> getAttribute(ManagedType<?> type, String attributeName) {
+		if (type == null) {
+			return null;
+		}
+
+		try {
+			return type.getAttribute(attributeName);
+		}
+		catch (IllegalArgumentException ignore) {
+			return null; // Not a persistent attribute, e.g. a @Transient getter or a DTO property.
+		}
+	}
+
+	private static ManagedType<?> getManagedType(Attribute<?, ?> attribute) {
+		Type<?> type = (attribute instanceof PluralAttribute)
+			? ((PluralAttribute<?, ?, ?>) attribute).getElementType()
+			: ((SingularAttribute<?, ?>) attribute).getType();
+		return (type instanceof ManagedType) ? (ManagedType<?>) type : null;
+	}
+
+	private static Fetch<?, ?> getFetch(FetchParent<?, ?> parent, String attributeName) {
+		for (Fetch<?, ?> fetch : parent.getFetches()) {
+			if (fetch.getAttribute().getName().equals(attributeName)) {
+				return fetch;
+			}
+		}
+
+		return null;
+	}
+
+	private static boolean hasCollectionFetch(FetchParent<?, ?> parent) {
+		for (Fetch<?, ?> fetch : parent.getFetches()) {
+			if (fetch.getAttribute().isCollection() || hasCollectionFetch(fetch)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+}
@@ -14,12 +14,17 @@ package org.omnifaces.optimusfaces.model;
 
 import static java.lang.Boolean.parseBoolean;
 import static java.lang.Math.abs;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.emptyMap;
 import static java.util.Collections.singletonMap;
 import static java.util.Collections.unmodifiableSet;
+import static java.util.Comparator.comparing;
 import static java.util.Optional.ofNullable;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
 import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
 import static javax.faces.component.UIComponent.getCurrentComponent;
@@ -27,6 +32,7 @@ import static org.omnifaces.persistence.model.Identifiable.ID;
 import static org.omnifaces.util.Ajax.oncomplete;
 import static org.omnifaces.util.Components.getCurrentComponent;
 import static org.omnifaces.util.Faces.getContext;
+import static org.omnifaces.util.Faces.sendFile;
 import static org.omnifaces.util.FacesLocal.getRequestParameter;
 import static org.omnifaces.util.FacesLocal.getRequestParameterValues;
 import static org.omnifaces.util.FacesLocal.isAjaxRequest;
@@ -38,6 +44,13 @@ import static org.omnifaces.utils.stream.Streams.stream;
 import static org.primefaces.model.SortOrder.ASCENDING;
 import static org.primefaces.model.SortOrder.DESCENDING;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -46,16 +59,25 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import javax.el.ValueExpression;
 import javax.faces.component.UIComponent;
 import javax.faces.component.UINamingContainer;
+import javax.faces.component.UIOutput;
+import javax.faces.context.ExternalContext;
 import javax.faces.context.FacesContext;
+import javax.faces.convert.Converter;
 
 import org.omnifaces.component.ParamHolder;
 import org.omnifaces.component.SimpleParam;
+import org.omnifaces.optimusfaces.taghandler.ExportField;
 import org.omnifaces.persistence.criteria.Criteria;
 import org.omnifaces.persistence.criteria.Like;
 import org.omnifaces.persistence.model.Identifiable;
@@ -85,7 +107,15 @@ public class LazyPagedDataModel<E extends Identifiable<?>> extends LazyDataModel
 	// Constants ------------------------------------------------------------------------------------------------------
 
 	private static final long serialVersionUID = 1L;
+
+	/** The context parameter name to specify the amount of rows per keyset paged chunk during export. Defaults to 1000. */
+	public static final String PARAM_NAME_EXPORT_CHUNK_SIZE = "org.omnifaces.optimusfaces.EXPORT_CHUNK_SIZE";
+
 	private static final String GLOBAL_FILTER = "globalFilter";
+	private static final int DEFAULT_EXPORT_CHUNK_SIZE = 1000;
+	private static final String CSV_EXTENSION = ".csv";
+	private static final String CSV_SEPARATOR = ",";
+	private static final String CSV_QUOTE = "\"";
 
 
 	// Internal properties --------------------------------------------------------------------------------------------
@@ -94,6 +124,11 @@ public class LazyPagedDataModel<E extends Identifiable<?>> extends LazyDataModel
 	private final LinkedHashMap<String, Boolean> defaultOrdering;
 	private final Map<String, Object> predefinedCriteria;
 	private final Supplier<Map<Getter<?>, Object>> dynamicCriteria;
+	private final boolean prefetch;
+	private final Class<?> entityType;
+	private transient Executor executor;
+	private String exportJobId;
+	private transient ExportJob rejectedExportJob;
 
 	protected boolean updateQueryString;
 	protected String queryParameterPrefix;
@@ -102,8 +137,11 @@ public class LazyPagedDataModel<E extends Identifiable<?>> extends LazyDataModel
 	protected String globalFilter;
 
 	private Page page;
+	private FetchPlan fetchPlan;
 	private PartialResultList<E> list;
 
+	private transient Prefetch<E> prefetched;
+
 
 	// op:dataTable properties ----------------------------------------------------------------------------------------
 
@@ -113,13 +151,17 @@ public class LazyPagedDataModel<E extends Identifiable<?>> extends LazyDataModel
 
 	// Constructors ---------------------------------------------------------------------------------------------------
 
-	LazyPagedDataModel(PartialResultListLoader<E> loader, LinkedHashMap<String, Boolean> defaultOrdering, Map<String, Object> predefinedCriteria, Supplier<Map<Getter<?>, Object>> dynamicCriteria) {
+	LazyPagedDataModel(PartialResultListLoader<E> loader, LinkedHashMap<String, Boolean> defaultOrdering, Map<String, Object> predefinedCriteria, Supplier<Map<Getter<?>, Object>> dynamicCriteria, boolean prefetch, Executor executor, Class<?> entityType) {
 		this.loader = loader;
 		this.defaultOrdering = defaultOrdering;
 		this.predefinedCriteria = predefinedCriteria;
 		this.dynamicCriteria = dynamicCriteria;
+		this.prefetch = prefetch;
+		this.executor = executor;
+		this.entityType = entityType;
 		filters = new LinkedHashMap<>();
 		page = Page.ALL;
+		fetchPlan = FetchPlan.NONE;
 		setRowCount(-1);
 	}
 
@@ -166,6 +208,7 @@ public class LazyPagedDataModel<E extends Identifiable<?>> extends LazyDataModel
 		ordering = processPageAndOrdering(context, table, sortBy);
 		filters = processFilters(context, table, processableColumns, filterBy);
 		globalFilter = processGlobalFilter(context, table, filterBy);
+		fetchPlan = processFetchPlan(table);
 		selection = processSelectionIfNecessary(context, selection);
 
 		int offset = table.getFirst();
@@ -189,7 +232,10 @@ public class LazyPagedDataModel<E extends Identifiable<?>> extends LazyDataModel
 		E last = nextOrPreviousPageOfSameCriteria ? list.get(previousPageOfSameCriteria ? 0 : list.size() - 1) : null;
 
 		page = new Page(offset, limit, last, previousPageOfSameCriteria, ordering, requiredCriteria, optionalCriteria);
-		list = load(page, rowCountNeedsUpdate);
+		Prefetch<E> prefetched = this.prefetched;
+		this.prefetched = null;
+		boolean pagePrefetched = !rowCountNeedsUpdate && prefetched != null && prefetched.isOf(page, fetchPlan); // Never when count is needed, because it was prefetched without.
+		list = pagePrefetched ? joinPrefetchedListOrElseLoad(prefetched.list, page) : load(page, rowCountNeedsUpdate);
 		int count = list.getEstimatedTotalNumberOfResults();
 
 		if (count != -1 && count != getRowCount()) {
@@ -202,10 +248,126 @@ public class LazyPagedDataModel<E extends Identifiable<?>> extends LazyDataModel
 
 			setRowCount(count);
 		}
+
+		if (prefetch) {
+			prefetchNextPage(offset, limit, requiredCriteria, optionalCriteria, pagePrefetched ? null : prefetched);
+		}
+	}
+
+	private PartialResultList<E> joinPrefetchedListOrElseLoad(CompletionStage<PartialResultList<E>> prefetchedList, Page page) {
+		try {
+			return join(prefetchedList);
+		}
+		catch (RuntimeException ignore) {
+			// Prefetch failed, just load it once again below so that any exception is thrown in the usual way.
+			return load(page, false);
+		}
+	}
+
+	/**
+	 * Prefetches the next page, unless the previously prefetched page is already exactly that page, e.g. because the
+	 * current page is loaded once again. Any other previously prefetched page is cancelled, because it's stale as the
+	 * page, the sort, the filters or the fetch plan have changed in the meanwhile.
+	 */
+	private void prefetchNextPage(int offset, int limit, Map<String, Object> requiredCriteria, Map<String, Object> optionalCriteria, Prefetch<E> previous) {
+		Page nextPage = (list.size() < limit || (getRowCount() > 0 && offset + limit >= getRowCount())) ? null
+			: new Page(offset + limit, limit, list.get(list.size() - 1), false, ordering, requiredCriteria, optionalCriteria);
+
+		if (previous != null) {
+			if (nextPage != null && previous.isOf(nextPage, fetchPlan)) {
+				prefetched = previous;
+				return;
+			}
+
+			previous.list.toCompletableFuture().cancel(true);
+		}
+
+		if (nextPage == null) {
+			return;
+		}
+
+		CompletionStage<PartialResultList<E>> nextList = loadInBackground(nextPage, false);
+
+		if (nextList != null) {
+			prefetched = new Prefetch<>(nextPage, fetchPlan, nextList);
+		}
 	}
 
 	protected PartialResultList<E> load(Page page, boolean estimateTotalNumberOfResults) {
-		return loader.getPage(page, estimateTotalNumberOfResults);
+		return join(loadAsync(page, estimateTotalNumberOfResults));
+	}
+
+	/**
+	 * Like {@link #load(Page, boolean)}, but doesn't block when the loader is an
+	 * {@link PagedDataModel.AsyncPartialResultListLoader}. A synchronous loader is invoked on the current thread.
+	 * @param page The page.
+	 * @param estimateTotalNumberOfResults Whether to estimate the total number of results.
+	 * @return The completion stage of the loaded page.
+	 */
+	protected CompletionStage<PartialResultList<E>> loadAsync(Page page, boolean estimateTotalNumberOfResults) {
+		return loadAsync(page, estimateTotalNumberOfResults, fetchPlan);
+	}
+
+	/**
+	 * Like {@link #loadAsync(Page, boolean)}, but a synchronous loader is invoked via {@link #getExecutor()}. This is
+	 * used for background work such as prefetching the next page.
+	 * @param page The page.
+	 * @param estimateTotalNumberOfResults Whether to estimate the total number of results.
+	 * @return The completion stage of the loaded page, or <code>null</code> when the loader is synchronous and the
+	 * executor would run it on the current thread anyway.
+	 */
+	protected CompletionStage<PartialResultList<E>> loadInBackground(Page page, boolean estimateTotalNumberOfResults) {
+		return loadInBackground(page, estimateTotalNumberOfResults, fetchPlan, getExecutor());
+	}
+
+	private CompletionStage<PartialResultList<E>> loadInBackground(Page page, boolean estimateTotalNumberOfResults, FetchPlan fetchPlan, Executor executor) {
+		if (loader instanceof AsyncPartialResultListLoader) {
+			return loadAsync(page, estimateTotalNumberOfResults, fetchPlan);
+		}
+
+		if (BackgroundExecutor.isCallerThread(executor)) {
+			return null;
+		}
+
+		return supplyAsync(() -> join(loadAsync(page, estimateTotalNumberOfResults, fetchPlan)), executor);
+	}
+
+	private CompletionStage<PartialResultList<E>> loadAsync(Page page, boolean estimateTotalNumberOfResults, FetchPlan fetchPlan) {
+		return getPageAsync(page, estimateTotalNumberOfResults, fetchPlan);
+	}
+
+	private CompletionStage<PartialResultList<E>> getPageAsync(Page page, boolean estimateTotalNumberOfResults, FetchPlan fetchPlan) {
+		if (loader instanceof AsyncPartialResultListLoader) {
+			return ((AsyncPartialResultListLoader<E>) loader).getPageAsync(page, estimateTotalNumberOfResults, fetchPlan);
+		}
+
+		return completedFuture(loader.getPage(page, estimateTotalNumberOfResults, fetchPlan));
+	}
+
+	private static <T> T join(CompletionStage<T> stage) {
+		try {
+			return stage.toCompletableFuture().join();
+		}
+		catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the executor for background work of this model. Defaults to {@link BackgroundExecutor#getDefault()}.
+	 * The executor is not serialized, so after deserialization this falls back to the default executor.
+	 * @return The executor for background work of this model.
+	 */
+	protected Executor getExecutor() {
+		if (executor == null) {
+			executor = BackgroundExecutor.getDefault();
+		}
+
+		return executor;
 	}
 
 	protected UIData getDataComponent() {
@@ -305,6 +467,12 @@ public class LazyPagedDataModel<E extends Identifiable<?>> extends LazyDataModel
 		return mergedFilters;
 	}
 
+	protected FetchPlan processFetchPlan(DataTable table) {
+		return FetchPlan.of(table.getColumns().stream()
+			.sorted(comparing(column -> !column.isVisible())) // Visible columns first, because only the first to-many relationship is fetched.
+			.map(UIColumn::getField).filter(Objects::nonNull).collect(toList()));
+	}
+
 	protected List<E> processSelectionIfNecessary(FacesContext context, List<E> currentSelection) {
 		if (currentSelection != null || context.isPostback()) {
 			return currentSelection;
@@ -441,6 +609,275 @@ public class LazyPagedDataModel<E extends Identifiable<?>> extends LazyDataModel
 	}
 
 
+	// Export ---------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Invoked when "CSV" export is chosen on an <code>&lt;op:dataTable exportMode="stream"&gt;</code>. This walks
+	 * through the current criteria and ordering with keyset paged chunks and writes the rows straight to the response,
+	 * so that the full result is never held in memory. The next chunk is already loaded via {@link #getExecutor()}
+	 * while the current chunk is being written. The values of columns without a custom <code>value</code> or
+	 * <code>exportValue</code> are obtained directly via the getters of their <code>field</code> property path, which
+	 * are resolved only once per export. Only the other columns are evaluated via EL.
+	 * @param tableId Table ID.
+	 * @param allColumns Whether to export all columns, else only the visible columns.
+	 * @param filename The filename of the export, without the <code>.csv</code> extension.
+	 * @throws IOException When the response cannot be written.
+	 */
+	public void exportCsv(String tableId, boolean allColumns, String filename) throws IOException {
+		FacesContext context = getContext();
+		DataTable table = (DataTable) getCurrentComponent().findComponent(tableId);
+		List<UIColumn> exportableColumns = table.getColumns().stream().filter(column -> isExportableColumn(column, allColumns)).collect(toList());
+		List<Function<Object, String>> exportValues = exportableColumns.stream().map(column -> {
+			String field = (String) ((UIComponent) column).getAttributes().get(ExportField.ATTRIBUTE_NAME);
+			return (field != null) ? getFieldExportValue(field) : getColumnExportValue(context, table.getVar(), column);
+		}).collect(toList());
+
+		sendFile(filename + CSV_EXTENSION, true, output -> {
+			Writer writer = new BufferedWriter(new OutputStreamWriter(output, UTF_8));
+			writeCsvRow(writer, exportableColumns.stream().map(UIColumn::getHeaderText).collect(toList()));
+			forEachExportChunk(getExportChunkSize(), chunk -> {
+				for (E row : chunk) {
+					writeCsvRow(writer, getExportValues(exportValues, row));
+				}
+
+				writer.flush();
+			});
+			writer.flush();
+		});
+	}
+
+	/**
+	 * Invoked when "CSV" export is chosen on an <code>&lt;op:dataTable exportMode="background"&gt;</code>. This submits
+	 * an {@link ExportJob} which walks through the current criteria and ordering with keyset paged chunks via
+	 * {@link #getExecutor()} and writes the rows to a temporary file, which can be downloaded via
+	 * {@link #downloadExportJob()} once the job is done. As there's no faces context in the background, the values are
+	 * obtained from the <code>field</code> property path of the columns instead of their <code>exportValue</code>. The
+	 * fetch plan and the executor are snapshotted on submit, so the job isn't affected by later changes of this model.
+	 * @param tableId Table ID.
+	 * @param allColumns Whether to export all columns, else only the visible columns.
+	 * @param filename The filename of the export, without the <code>.csv</code> extension.
+	 */
+	public void exportCsvInBackground(String tableId, boolean allColumns, String filename) {
+		FacesContext context = getContext();
+		ExternalContext externalContext = context.getExternalContext();
+		DataTable table = (DataTable) getCurrentComponent().findComponent(tableId);
+		List<UIColumn> exportableColumns = table.getColumns().stream().filter(column -> isExportableColumn(column, allColumns)).collect(toList());
+		List<String> headers = exportableColumns.stream().map(UIColumn::getHeaderText).collect(toList());
+		List<Function<Object, String>> exportValues = exportableColumns.stream().map(column -> getFieldExportValue(column.getField())).collect(toList());
+
+		Entry<Integer, ExportChunks<E>> exportChunks = getExportChunksInBackground();
+		String sessionId = externalContext.getSessionId(true);
+		String owner = coalesce(externalContext.getRemoteUser(), sessionId);
+		int maxJobsPerUser = parseInitParameter(externalContext, ExportJob.PARAM_NAME_MAX_JOBS_PER_USER, ExportJob.DEFAULT_MAX_JOBS_PER_USER);
+		int maxJobsPerNode = parseInitParameter(externalContext, ExportJob.PARAM_NAME_MAX_JOBS_PER_NODE, ExportJob.DEFAULT_MAX_JOBS_PER_NODE);
+
+		ExportJob job = ExportJob.submit(owner, sessionId, filename + CSV_EXTENSION, exportChunks.getKey(), maxJobsPerUser, maxJobsPerNode, getExecutor(), (exportJob, output) -> {
+			Writer writer = new BufferedWriter(new OutputStreamWriter(output, UTF_8));
+			writeCsvRow(writer, headers);
+			exportChunks.getValue().forEach(chunk -> {
+				for (E row : chunk) {
+					writeCsvRow(writer, getExportValues(exportValues, row));
+				}
+
+				writer.flush();
+				exportJob.addRowCount(chunk.size());
+			});
+			writer.flush();
+		});
+
+		exportJobId = job.isRejected() ? null : job.getId();
+		rejectedExportJob = job.isRejected() ? job : null;
+	}
+
+	/**
+	 * Invoked when the download of the export job is chosen on an
+	 * <code>&lt;op:dataTable exportMode="background"&gt;</code>. The export job and its file are removed afterwards.
+	 * @throws IOException When the response cannot be written.
+	 */
+	public void downloadExportJob() throws IOException {
+		ExportJob.removeExpiredJobs();
+		ExportJob job = ExportJob.get(exportJobId);
+
+		if (job == null || !job.isDone()) {
+			return;
+		}
+
+		try (InputStream content = Files.newInputStream(job.getFile())) {
+			sendFile(content, job.getFilename(), true);
+		}
+		finally {
+			job.remove();
+			exportJobId = null;
+		}
+	}
+
+	/**
+	 * Returns the export job submitted via {@link #exportCsvInBackground(String, boolean, String)}, if any.
+	 * @return The export job submitted via {@link #exportCsvInBackground(String, boolean, String)}, if any.
+	 */
+	public ExportJob getExportJob() {
+		ExportJob job = ExportJob.get(exportJobId);
+		return (job != null) ? job : rejectedExportJob;
+	}
+
+	/**
+	 * Returns the amount of rows per keyset paged chunk during export. Defaults to the value of the
+	 * {@value #PARAM_NAME_EXPORT_CHUNK_SIZE} context parameter, or else 1000.
+	 * @return The amount of rows per keyset paged chunk during export.
+	 */
+	protected int getExportChunkSize() {
+		return parseInitParameter(getContext().getExternalContext(), PARAM_NAME_EXPORT_CHUNK_SIZE, DEFAULT_EXPORT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Walks through the current criteria and ordering with keyset paged chunks of given size. The next chunk is already
+	 * loaded in background while the current chunk is being consumed.
+	 * @param chunkSize The amount of rows per chunk.
+	 * @param chunkConsumer The chunk consumer.
+	 * @throws IOException When the chunk consumer throws it.
+	 */
+	protected void forEachExportChunk(int chunkSize, ChunkConsumer<List<E>> chunkConsumer) throws IOException {
+		Page firstChunkPage = getFirstExportChunkPage(chunkSize);
+		forEachExportChunk(firstChunkPage, load(firstChunkPage, false), chunkPage -> loadInBackground(chunkPage, false), chunkPage -> load(chunkPage, false), chunkConsumer);
+	}
+
+	/**
+	 * Returns the estimated total number of rows along with the walk through the export chunks of the current criteria
+	 * and ordering in background. The first chunk is already loaded in the current thread as it may need the faces
+	 * context, e.g. {@link NonLazyPagedDataModel}. The next chunks are loaded synchronously in the thread of the walk,
+	 * which is already a thread of {@link #getExecutor()}, because submitting them to the same executor could deadlock
+	 * once all of its threads are occupied by export jobs waiting on their chunks. The fetch plan is snapshotted, so
+	 * the walk isn't affected by later changes of this model.
+	 */
+	Entry<Integer, ExportChunks<E>> getExportChunksInBackground() {
+		Page firstChunkPage = getFirstExportChunkPage(getExportChunkSize());
+		PartialResultList<E> firstChunk = load(firstChunkPage, true);
+		FetchPlan fetchPlan = this.fetchPlan;
+		Function<Page, PartialResultList<E>> chunkLoader = chunkPage -> join(loadAsync(chunkPage, false, fetchPlan));
+		return new SimpleImmutableEntry<>(firstChunk.getEstimatedTotalNumberOfResults(), chunkConsumer -> forEachExportChunk(firstChunkPage, firstChunk, chunkPage -> null, chunkLoader, chunkConsumer));
+	}
+
+	Page getFirstExportChunkPage(int chunkSize) {
+		return new Page(0, chunkSize, null, false, (ordering != null) ? ordering : defaultOrdering, page.getRequiredCriteria(), page.getOptionalCriteria());
+	}
+
+	private void forEachExportChunk(Page firstChunkPage, PartialResultList<E> firstChunk, Function<Page, CompletionStage<PartialResultList<E>>> chunkLoaderInBackground, Function<Page, PartialResultList<E>> chunkLoader, ChunkConsumer<List<E>> chunkConsumer) throws IOException {
+		LinkedHashMap<String, Boolean> chunkOrdering = new LinkedHashMap<>(firstChunkPage.getOrdering());
+		int chunkSize = firstChunkPage.getLimit();
+		Page chunkPage = firstChunkPage;
+		PartialResultList<E> chunk = firstChunk;
+
+		while (!chunk.isEmpty()) {
+			Page nextChunkPage = (chunk.size() < chunkSize) ? null : new Page(chunkPage.getOffset() + chunkSize, chunkSize, chunk.get(chunk.size() - 1), false, chunkOrdering, chunkPage.getRequiredCriteria(), chunkPage.getOptionalCriteria());
+			CompletionStage<PartialResultList<E>> nextChunk = (nextChunkPage == null) ? null : chunkLoaderInBackground.apply(nextChunkPage);
+			chunkConsumer.accept(chunk);
+
+			if (nextChunkPage == null) {
+				break;
+			}
+
+			chunk = (nextChunk != null) ? join(nextChunk) : chunkLoader.apply(nextChunkPage);
+			chunkPage = nextChunkPage;
+		}
+	}
+
+	/**
+	 * Like {@link java.util.function.Consumer}, but then allowing {@link IOException}.
+	 * @param <T> The generic type of the input.
+	 */
+	@FunctionalInterface
+	protected static interface ChunkConsumer<T> {
+		void accept(T input) throws IOException;
+	}
+
+	/**
+	 * The walk through the export chunks in background, see {@link LazyPagedDataModel#getExportChunksInBackground()}.
+	 * @param <E> The generic entity type.
+	 */
+	@FunctionalInterface
+	static interface ExportChunks<E> {
+		void forEach(ChunkConsumer<List<E>> chunkConsumer) throws IOException;
+	}
+
+	private static boolean isExportableColumn(UIColumn column, boolean allColumns) {
+		if (!column.isRendered() || !(allColumns || column.isVisible())) {
+			return false;
+		}
+
+		Object wasExportable = ((UIComponent) column).getAttributes().get("wasExportable"); // See PagedDataModel#setExportable().
+		return (wasExportable != null) ? (Boolean) wasExportable : column.isExportable();
+	}
+
+	private static List<String> getExportValues(List<Function<Object, String>> exportValues, Object row) {
+		List<String> values = new ArrayList<>(exportValues.size());
+
+		for (Function<Object, String> exportValue : exportValues) {
+			values.add(exportValue.apply(row));
+		}
+
+		return values;
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static Function<Object, String> getColumnExportValue(FacesContext context, String var, UIColumn column) {
+		UIOutput output = null;
+
+		for (UIComponent child : column.getChildren()) {
+			if (child instanceof UIOutput && child.getValueExpression("value") != null) { // See column.xhtml: the first h:outputText represents exportValue.
+				output = (UIOutput) child;
+				break;
+			}
+		}
+
+		if (output == null) {
+			return row -> "";
+		}
+
+		UIOutput exportOutput = output;
+		ValueExpression valueExpression = output.getValueExpression("value");
+		Converter converter = output.getConverter();
+		Map<String, Object> requestMap = context.getExternalContext().getRequestMap();
+
+		return row -> {
+			Object originalVar = requestMap.put(var, row);
+
+			try {
+				Object value = valueExpression.getValue(context.getELContext());
+				return (converter != null) ? converter.getAsString(context, exportOutput, value) : (value == null) ? "" : value.toString();
+			}
+			finally {
+				if (originalVar != null) {
+					requestMap.put(var, originalVar);
+				}
+				else {
+					requestMap.remove(var);
+				}
+			}
+		};
+	}
+
+	private static Function<Object, String> getFieldExportValue(String field) {
+		if (field == null) {
+			return row -> "";
+		}
+
+		return row -> {
+			Object value = (row == null) ? null : PropertyPath.of(row.getClass(), field).getValue(row);
+			return (value == null) ? "" : value.toString();
+		};
+	}
+
+	static int parseInitParameter(ExternalContext externalContext, String name, int defaultValue) {
+		String value = externalContext.getInitParameter(name);
+		return isEmpty(value) ? defaultValue : Integer.parseInt(value.trim());
+	}
+
+	private static void writeCsvRow(Writer writer, List<String> values) throws IOException {
+		writer.write(values.stream().map(value -> CSV_QUOTE + coalesce(value, "").replace(CSV_QUOTE, CSV_QUOTE + CSV_QUOTE) + CSV_QUOTE).collect(joining(CSV_SEPARATOR)));
+		writer.write('\n');
+	}
+
+
 	// PagedDataModel state -------------------------------------------------------------------------------------------
 
 	@Override
@@ -451,6 +888,26 @@ public class LazyPagedDataModel<E extends Identifiable<?>> extends LazyDataModel
 
 	// Getters+setters for op:dataTable and op:column -----------------------------------------------------------------
 
+	/**
+	 * Returns whether given field represents a collection based on the {@link PropertyPath} of the entity type. This
+	 * is never derived from the currently loaded rows, so that every build of the view gives the same answer. When the
+	 * entity type is not known, this returns <code>null</code>.
+	 */
+	@Override
+	public Boolean isCollectionField(String field) {
+		if (entityType == null || isEmpty(field)) {
+			return null;
+		}
+
+		PropertyPath propertyPath = PropertyPath.of(entityType, field);
+
+		if (!propertyPath.isResolved() || propertyPath.getType() == Object.class) {
+			return null;
+		}
+
+		return propertyPath.isCollection() || Iterable.class.isAssignableFrom(propertyPath.getType());
+	}
+
 	@Override
 	public String getRowKey(E entity) {
 		return String.valueOf(entity.getId() != null ? entity.getId() : entity.hashCode());
@@ -531,4 +988,31 @@ public class LazyPagedDataModel<E extends Identifiable<?>> extends LazyDataModel
 		return params != null ? stream(params).filter(Lang::isNotBlank).collect(toList()) : emptyList();
 	}
 
+
+	// Nested classes -------------------------------------------------------------------------------------------------
+
+	/**
+	 * The next page being loaded in background. It's keyed on the full page and the fetch plan it was loaded with. The
+	 * ordering of the page is compared once more as a list, because {@link Page#equals(Object)} compares it as a map,
+	 * which ignores the priority of the sort fields.
+	 */
+	private static final class Prefetch<E> {
+
+		private final Page page;
+		private final List<Entry<String, Boolean>> ordering;
+		private final FetchPlan fetchPlan;
+		private final CompletionStage<PartialResultList<E>> list;
+
+		private Prefetch(Page page, FetchPlan fetchPlan, CompletionStage<PartialResultList<E>> list) {
+			this.page = page;
+			this.ordering = new ArrayList<>(page.getOrdering().entrySet());
+			this.fetchPlan = fetchPlan;
+			this.list = list;
+		}
+
+		private boolean isOf(Page page, FetchPlan fetchPlan) {
+			return this.page.equals(page) && ordering.equals(new ArrayList<>(page.getOrdering().entrySet())) && this.fetchPlan.equals(fetchPlan);
+		}
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,929 @@
+/*
+ * Copyright OmniFaces
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.optimusfaces.model;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Arrays.asList;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Objects.requireNonNull;
+import static org.omnifaces.optimusfaces.model.Dataset.computeIfAbsent;
+import static org.omnifaces.optimusfaces.model.Dataset.getServletContext;
+import static org.omnifaces.optimusfaces.model.Dataset.getSharedDatasets;
+import static org.omnifaces.optimusfaces.model.Dataset.getSharedDatasetsAttributeName;
+import static org.omnifaces.optimusfaces.model.Dataset.newCache;
+import static org.omnifaces.persistence.model.Identifiable.ID;
+import static org.omnifaces.utils.stream.Streams.stream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import javax.servlet.ServletContext;
+
+import org.omnifaces.optimusfaces.model.Dataset.IndexComparator;
+import org.omnifaces.optimusfaces.model.Dataset.PropertyMatcher;
+import org.omnifaces.persistence.model.dto.Page;
+import org.primefaces.model.SortMeta;
+
+/**
+ * <p>
+ * The read-only data of a {@link NonLazyPagedDataModel} in a binary columnar file which is memory-mapped, so that very
+ * large reference data doesn't need to live on the heap as entities. Each property is stored as a column of
+ * <code>long</code> values for numbers, <code>LocalDate</code> and <code>Instant</code>, of ordinals for enums, or of
+ * UTF-8 bytes for strings, and each column is mapped on its own. Filtering and sorting read straight from the mapped
+ * columns, and the entities are created only for the rows of the page by the factory given to
+ * {@link #open(Path, Class, Factory)}. Only the filtered and sorted indexes, which cost an <code>int</code> per row,
+ * and the collation ranks of sorted string properties live on the heap, and they are cached per criteria and ordering
+ * the same way as in a {@link Dataset}.
+ * <p>
+ * The file is written once via {@link #write(Path, Class, List, Stream)}, e.g. by a batch job, and can then be opened
+ * by any amount of applications. Only the written properties can be presented, filtered and sorted, and collection
+ * properties are not supported. Each column must fit in 2 GB. The ID must be one of the written properties, because the
+ * paged data model always orders by the ID as last. Ties in the ordering are ordered by their position in the file.
+ * <pre>
+ * MappedDataset.write(path, YourEntity.class, Arrays.asList("id", "name", "type", "created"), yourService.streamAll());
+ * MappedDataset&lt;YourEntity&gt; dataset = MappedDataset.open(path, YourEntity.class, YourEntity::new);
+ * </pre>
+ * <p>
+ * Wherein <code>YourEntity</code> has a constructor taking the <code>Object[]</code> of the values of the written
+ * properties, in the order in which they were written.
+ * <p>
+ * A mapped dataset is safe to be shared by multiple paged data models and users, see also {@link Dataset}. Give it a
+ * name via {@link #share(String)}, so that when the paged data model is serialized, e.g. on session failover, then only
+ * the name is serialized and the mapped dataset of that name is looked up again on deserialization. Otherwise the path
+ * of the file, the entity type and the factory are serialized along with it, and the file is opened and mapped again
+ * on every deserialization, whereby the cached indexes start empty. The {@link Factory} is therefore serializable as
+ * well, so it must not capture anything which isn't serializable.
+ *
+ * @param <E> The generic entity type.
+ * @see PagedDataModel#nonLazy(MappedDataset)
+ * @author Bauke Scholtz
+ */
+public final class MappedDataset<E> implements Serializable {
+
+	// Constants ------------------------------------------------------------------------------------------------------
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int MAGIC = 0x4F504D44; // "OPMD".
+	private static final int VERSION = 1;
+	private static final int PREAMBLE_LENGTH = 3 * Integer.BYTES; // Magic, version and header length.
+	private static final int MAX_CACHED_INDEXES = 16;
+	private static final int MAX_CACHED_RANKS = 8;
+
+
+	// Properties -----------------------------------------------------------------------------------------------------
+
+	private final String file;
+	private final Class<E> type;
+	private final Factory<E> factory;
+	private final transient int size;
+	private final transient int[] allIndex;
+	private final transient Map<String, MappedColumn> columns = new LinkedHashMap<>();
+	private final transient Map<List<Object>, int[]> filteredIndexes = newCache(MAX_CACHED_INDEXES);
+	private final transient Map<List<Object>, int[]> sortedIndexes = newCache(MAX_CACHED_INDEXES);
+	private final transient Map<List<Object>, int[]> pageIndexes = newCache(MAX_CACHED_INDEXES);
+	private transient volatile String name;
+
+
+	// Constructors ---------------------------------------------------------------------------------------------------
+
+	private MappedDataset(Path file, Class<E> type, Factory<E> factory) throws IOException {
+		this.file = file.toString();
+		this.type = type;
+		this.factory = factory;
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			DataInputStream header = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+
+			if (header.readInt() != MAGIC || header.readInt() != VERSION) {
+				throw new IOException("Not a mapped dataset file: " + file);
+			}
+
+			long position = PREAMBLE_LENGTH + (long) header.readInt();
+			size = header.readInt();
+			int columnCount = header.readInt();
+
+			for (int i = 0; i < columnCount; i++) {
+				String property = header.readUTF();
+				Class<?> columnType = loadClass(header.readUTF());
+				String[] constants = new String[header.readInt()];
+
+				for (int j = 0; j < constants.length; j++) {
+					constants[j] = header.readUTF();
+				}
+
+				long dataLength = header.readLong();
+				long nullsLength = (size + 7L) / 8;
+				long valuesLength = (columnType == String.class) ? (size + 1L) * Integer.BYTES : (long) size * (columnType.isEnum() ? Integer.BYTES : Long.BYTES);
+				ByteBuffer nulls = channel.map(READ_ONLY, position, nullsLength);
+				ByteBuffer values = channel.map(READ_ONLY, position + nullsLength, valuesLength);
+				ByteBuffer data = channel.map(READ_ONLY, position + nullsLength + valuesLength, dataLength);
+				position += nullsLength + valuesLength + dataLength;
+				columns.put(property, MappedColumn.of(columnType, constants, nulls, values, data));
+			}
+		}
+
+		if (!columns.containsKey(ID)) {
+			throw new IOException("Mapped dataset file has no " + ID + " column: " + file);
+		}
+
+		allIndex = IntStream.range(0, size).toArray();
+	}
+
+	/**
+	 * Writes given rows into given file, as columns of given properties. The rows are streamed only once, whereby the
+	 * columns are written into temporary files next to given file, which are then concatenated into another temporary
+	 * file next to given file. This is finally atomically moved to given file, so that applications which open given
+	 * file never see a partially written file. The stream is closed afterwards.
+	 * @param <E> The generic entity type.
+	 * @param file The file to write to. An existing file is atomically replaced. The file system must support an atomic
+	 * move within the directory of given file.
+	 * @param type The entity type.
+	 * @param properties The properties to write, in the order in which their values are passed to the factory given
+	 * to {@link #open(Path, Class, Factory)}. This must include the ID.
+	 * @param rows The rows to write.
+	 * @throws IOException When the file cannot be written.
+	 * @throws IllegalArgumentException When the properties don't include the ID, when a property represents a
+	 * collection or is not of a number, <code>LocalDate</code>, <code>Instant</code>, enum or string type, when a row
+	 * is <code>null</code>, or when a column exceeds 2 GB.
+	 */
+	public static <E> void write(Path file, Class<E> type, List<String> properties, Stream<E> rows) throws IOException {
+		if (!properties.contains(ID)) {
+			rows.close();
+			throw new IllegalArgumentException("properties must include " + ID + ": " + properties);
+		}
+
+		List<ColumnWriter> writers = new ArrayList<>(properties.size());
+		Path tempFile = null;
+
+		try (Stream<E> stream = rows) {
+			for (String property : properties) {
+				writers.add(new ColumnWriter(PropertyPath.of(type, property), file));
+			}
+
+			int size = 0;
+
+			for (Iterator<E> iterator = stream.iterator(); iterator.hasNext(); size++) {
+				E row = iterator.next();
+
+				if (row == null) {
+					throw new IllegalArgumentException("rows may not contain null");
+				}
+
+				for (ColumnWriter writer : writers) {
+					writer.write(size, row);
+				}
+			}
+
+			ByteArrayOutputStream header = new ByteArrayOutputStream();
+			DataOutputStream headerOutput = new DataOutputStream(header);
+			headerOutput.writeInt(size);
+			headerOutput.writeInt(writers.size());
+
+			for (ColumnWriter writer : writers) {
+				writer.finish(headerOutput);
+			}
+
+			tempFile = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+
+			try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+				output.writeInt(MAGIC);
+				output.writeInt(VERSION);
+				output.writeInt(header.size());
+				header.writeTo(output);
+
+				for (ColumnWriter writer : writers) {
+					writer.writeColumn(output, size);
+				}
+			}
+
+			Files.move(tempFile, file, ATOMIC_MOVE, REPLACE_EXISTING);
+		}
+		finally {
+			for (ColumnWriter writer : writers) {
+				writer.close();
+			}
+
+			if (tempFile != null) {
+				Files.deleteIfExists(tempFile); // Only still exists when not moved.
+			}
+		}
+	}
+
+	/**
+	 * Returns a dataset of given file as written by {@link #write(Path, Class, List, Stream)}. The columns are mapped
+	 * right away, but they are only read on demand.
+	 * @param <E> The generic entity type.
+	 * @param file The file to map.
+	 * @param type The entity type.
+	 * @param factory The factory which creates an entity of the values of the written properties, in the order in
+	 * which they were written. This is only invoked for the rows of the page.
+	 * @return A dataset of given file.
+	 * @throws IOException When the file cannot be read, is not written by {@link #write(Path, Class, List, Stream)}, or
+	 * has no ID column.
+	 */
+	public static <E> MappedDataset<E> open(Path file, Class<E> type, Factory<E> factory) throws IOException {
+		return new MappedDataset<>(file, type, factory);
+	}
+
+
+	// Actions --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Shares this mapped dataset under given name in the application, the same way as {@link Dataset#share(String)}.
+	 * When a paged data model of this mapped dataset is serialized, e.g. on session failover, then only the name is
+	 * serialized, and the mapped dataset shared under that name is looked up again on deserialization, instead of
+	 * mapping the file again. It must therefore be shared during application startup, also on the other nodes of a
+	 * cluster. A mapped dataset which is previously shared under the same name is replaced, e.g. when the file is
+	 * rewritten. All mapped datasets are unshared when the application is destroyed.
+	 * @param name The name to share this mapped dataset under.
+	 * @return This mapped dataset.
+	 * @throws IllegalStateException When this mapped dataset is already shared under another name.
+	 */
+	public MappedDataset<E> share(String name) {
+		requireNonNull(name, "name");
+		Map<String, MappedDataset<?>> sharedDatasets = getSharedDatasets(getServletContext(), MappedDataset.class);
+
+		synchronized (sharedDatasets) {
+			if (this.name != null && !this.name.equals(name)) {
+				throw new IllegalStateException("MappedDataset is already shared as " + this.name);
+			}
+
+			MappedDataset<?> previous = sharedDatasets.put(name, this);
+
+			if (previous != null && previous != this) {
+				previous.name = null;
+			}
+
+			this.name = name;
+		}
+
+		return this;
+	}
+
+
+
+	/**
+	 * Returns the rows matching the criteria of given page, in the ordering of given page, from the offset of given page
+	 * until the limit of given page, along with the total amount of matching rows. Only the entities of the page are
+	 * created.
+	 */
+	Entry<List<E>, Integer> getPage(Page page, Locale locale, Map<String, SortMeta> sortBy) {
+		List<Object> filterKey = asList(new LinkedHashMap<>(page.getRequiredCriteria()), new LinkedHashMap<>(page.getOptionalCriteria()), locale);
+		int[] filteredIndex = filter(filterKey, page, locale);
+		int offset = Math.min(filteredIndex.length, page.getOffset());
+		int limit = Math.min(filteredIndex.length - offset, page.getLimit());
+		int[] index = getSortedIndex(filterKey, filteredIndex, Dataset.getSortKey(page.getOrdering(), locale, sortBy));
+		List<E> list = new ArrayList<>(limit);
+
+		for (int i = offset; i < offset + limit; i++) {
+			list.add(getRow(index[i]));
+		}
+
+		return new SimpleImmutableEntry<>(list, filteredIndex.length);
+	}
+
+	/**
+	 * Required criteria are combined via AND and optional criteria via OR, the same way as in a {@link Dataset}.
+	 */
+	private int[] filter(List<Object> filterKey, Page page, Locale locale) {
+		if (page.getRequiredCriteria().isEmpty() && page.getOptionalCriteria().isEmpty()) {
+			return allIndex;
+		}
+
+		return computeIfAbsent(filteredIndexes, filterKey, key -> {
+			IntPredicate filter = i -> true;
+
+			for (Entry<String, Object> criteria : page.getRequiredCriteria().entrySet()) {
+				filter = filter.and(compile(criteria.getKey(), criteria.getValue(), locale));
+			}
+
+			if (!page.getOptionalCriteria().isEmpty()) {
+				IntPredicate optionalFilter = i -> false;
+
+				for (Entry<String, Object> criteria : page.getOptionalCriteria().entrySet()) {
+					optionalFilter = optionalFilter.or(compile(criteria.getKey(), criteria.getValue(), locale));
+				}
+
+				filter = filter.and(optionalFilter);
+			}
+
+			return IntStream.of(allIndex).filter(filter).toArray();
+		});
+	}
+
+	/**
+	 * Returns the predicate on the row index matching given criteria value of given property. When the column can't
+	 * compile the criteria value, then it's matched against the value read from the column, so that no entity needs to
+	 * be created.
+	 */
+	private IntPredicate compile(String property, Object criteriaValue, Locale locale) {
+		MappedColumn column = getColumn(property);
+		IntPredicate predicate = column.compile(criteriaValue, locale);
+
+		if (predicate != null) {
+			return predicate;
+		}
+
+		PropertyMatcher matcher = new PropertyMatcher(PropertyPath.of(type, property), criteriaValue, locale);
+		return i -> matcher.matchesValue(column.get(i));
+	}
+
+	/**
+	 * Returns the given filtered index in the ordering of given sort key. All rows are sorted only once per sort key,
+	 * whereafter the filtered rows are retained from it.
+	 */
+	private int[] getSortedIndex(List<Object> filterKey, int[] filteredIndex, List<Object> sortKey) {
+		if (filteredIndex.length < 2 || sortKey.size() == 1) {
+			return filteredIndex;
+		}
+
+		return computeIfAbsent(pageIndexes, asList(filterKey, sortKey), pageKey -> {
+			int[] sortedIndex = computeIfAbsent(sortedIndexes, sortKey, this::sort);
+			return (filteredIndex.length == size) ? sortedIndex : Dataset.retain(sortedIndex, filteredIndex);
+		});
+	}
+
+	private int[] sort(List<Object> sortKey) {
+		IndexComparator comparator = getComparator(sortKey);
+		int[] sortedIndex = allIndex.clone();
+		Dataset.mergeSort(allIndex.clone(), sortedIndex, 0, size, comparator);
+		return sortedIndex;
+	}
+
+	/**
+	 * Returns the comparator of given sort key as created by {@link Dataset#getSortKey(Map, Locale, Map)}, including
+	 * the ties.
+	 */
+	private IndexComparator getComparator(List<Object> sortKey) {
+		Locale locale = (Locale) sortKey.get(0);
+		IndexComparator comparator = (left, right) -> 0;
+
+		for (Object field : sortKey.subList(1, sortKey.size())) {
+			List<?> fieldKey = (List<?>) field;
+			MappedColumn column = getColumn((String) fieldKey.get(0));
+			int direction = (Boolean) fieldKey.get(1) ? 1 : -1;
+			Integer nullSortOrder = (Integer) fieldKey.get(2);
+			IndexComparator values = column.getComparator(locale, Boolean.TRUE.equals(fieldKey.get(3)));
+			comparator = comparator.thenComparing((left, right) -> compare(column, values, left, right, nullSortOrder) * direction);
+		}
+
+		return comparator.thenComparing(Integer::compare);
+	}
+
+	private static int compare(MappedColumn column, IndexComparator values, int left, int right, Integer nullSortOrder) {
+		boolean leftNull = column.isNull(left);
+		boolean rightNull = column.isNull(right);
+
+		if (leftNull && rightNull) {
+			return 0;
+		}
+		else if (leftNull) {
+			return nullSortOrder != null ? nullSortOrder : 1;
+		}
+		else if (rightNull) {
+			return nullSortOrder != null ? nullSortOrder : -1;
+		}
+		else {
+			return values.compare(left, right);
+		}
+	}
+
+	private E getRow(int position) {
+		return factory.apply(columns.values().stream().map(column -> column.get(position)).toArray());
+	}
+
+
+	// Getters --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Returns the written properties, in the order in which their values are passed to the factory.
+	 * @return The written properties.
+	 */
+	public List<String> getProperties() {
+		return unmodifiableList(new ArrayList<>(columns.keySet()));
+	}
+
+	/**
+	 * Returns the amount of rows.
+	 * @return The amount of rows.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Returns the entity type.
+	 */
+	Class<E> getType() {
+		return type;
+	}
+
+	private MappedColumn getColumn(String property) {
+		MappedColumn column = columns.get(property);
+
+		if (column == null) {
+			throw new IllegalArgumentException("property is not in mapped dataset: " + property);
+		}
+
+		return column;
+	}
+
+
+	// Lifecycle ------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Unshares all mapped datasets of given servlet context. This is invoked by {@link PagedDataModelListener} when the
+	 * application is destroyed.
+	 */
+	static void unshareAll(ServletContext servletContext) {
+		Map<String, MappedDataset<?>> sharedDatasets = getSharedDatasets(servletContext, MappedDataset.class);
+
+		synchronized (sharedDatasets) {
+			sharedDatasets.values().forEach(dataset -> dataset.name = null);
+			sharedDatasets.clear();
+		}
+
+		servletContext.removeAttribute(getSharedDatasetsAttributeName(MappedDataset.class));
+	}
+
+
+	// Serialization --------------------------------------------------------------------------------------------------
+
+	private Object writeReplace() {
+		String sharedName = name;
+		return (sharedName != null) ? new SharedMappedDatasetHandle(sharedName) : this;
+	}
+
+	/**
+	 * Opens and maps the file again, see {@link #open(Path, Class, Factory)}. The cached indexes start empty.
+	 */
+	private Object readResolve() throws ObjectStreamException {
+		try {
+			return new MappedDataset<>(Paths.get(file), type, factory);
+		}
+		catch (IOException e) {
+			InvalidObjectException exception = new InvalidObjectException("Cannot map " + file);
+			exception.initCause(e);
+			throw exception;
+		}
+	}
+
+
+	// Nested classes -------------------------------------------------------------------------------------------------
+
+	/**
+	 * The serialized form of a shared mapped dataset, which holds only the name it is shared under.
+	 */
+	private static final class SharedMappedDatasetHandle implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String name;
+
+		private SharedMappedDatasetHandle(String name) {
+			this.name = name;
+		}
+
+		private Object readResolve() throws InvalidObjectException {
+			MappedDataset<?> dataset = Dataset.<MappedDataset<?>>getSharedDatasets(getServletContext(), MappedDataset.class).get(name);
+
+			if (dataset == null) {
+				throw new InvalidObjectException("MappedDataset is not shared as " + name + ", it must be shared during application startup");
+			}
+
+			return dataset;
+		}
+	}
+
+	/**
+	 * The factory which creates an entity of the values of the written properties, in the order in which they were
+	 * written. It's serializable, because it's serialized along with the mapped dataset.
+	 *
+	 * @param <E> The generic entity type.
+	 * @see MappedDataset#open(Path, Class, Factory)
+	 */
+	@FunctionalInterface
+	public static interface Factory<E> extends Function<Object[], E>, Serializable {
+		// Only specifies serializability.
+	}
+
+	/**
+	 * A mapped column. Only absolute reads are used, so that it can be read by multiple threads at once.
+	 */
+	private abstract static class MappedColumn {
+
+		private final ByteBuffer nulls;
+
+		private MappedColumn(ByteBuffer nulls) {
+			this.nulls = nulls;
+		}
+
+		static MappedColumn of(Class<?> type, String[] constants, ByteBuffer nulls, ByteBuffer values, ByteBuffer data) throws IOException {
+			if (type.isEnum()) {
+				return new MappedEnumColumn(type, constants, nulls, values.asIntBuffer());
+			}
+			else if (type == String.class) {
+				return new MappedStringColumn(nulls, values.asIntBuffer(), data);
+			}
+			else {
+				return new MappedLongColumn(type, nulls, values.asLongBuffer());
+			}
+		}
+
+		boolean isNull(int index) {
+			return (nulls.get(index >>> 3) & (1 << (index & 7))) != 0;
+		}
+
+		/**
+		 * Returns the value at given row index.
+		 */
+		abstract Object get(int index);
+
+		/**
+		 * Returns the predicate on the row index matching given criteria value, or <code>null</code> when given criteria
+		 * value can't be compiled for this column, see also {@link DatasetColumn#compile(Object, Locale)}.
+		 */
+		abstract IntPredicate compile(Object criteriaValue, Locale locale);
+
+		/**
+		 * Returns the comparator of the non-<code>null</code> values of this column, the same way as in a
+		 * {@link Dataset}.
+		 */
+		abstract IndexComparator getComparator(Locale locale, boolean caseSensitive);
+	}
+
+	/**
+	 * A column of values encoded by {@link DatasetColumn#toLong(Object)}.
+	 */
+	private static final class MappedLongColumn extends MappedColumn {
+
+		private final Class<?> type;
+		private final LongBuffer values;
+
+		private MappedLongColumn(Class<?> type, ByteBuffer nulls, LongBuffer values) {
+			super(nulls);
+			this.type = type;
+			this.values = values;
+		}
+
+		@Override
+		Object get(int index) {
+			return isNull(index) ? null : DatasetColumn.fromLong(values.get(index), type);
+		}
+
+		/**
+		 * Only plain values of exactly the type of this column are compiled, others are left to the
+		 * {@link PropertyMatcher} as their string representation may still match.
+		 */
+		@Override
+		IntPredicate compile(Object criteriaValue, Locale locale) {
+			if (!DatasetColumn.isPlain(criteriaValue) || !stream(criteriaValue).allMatch(value -> value == null || value.getClass() == type)) {
+				return null;
+			}
+
+			boolean matchNull = stream(criteriaValue).anyMatch(Objects::isNull);
+			long[] matches = stream(criteriaValue).filter(Objects::nonNull).mapToLong(DatasetColumn::toLong).sorted().toArray();
+			return i -> isNull(i) ? matchNull : Arrays.binarySearch(matches, values.get(i)) >= 0;
+		}
+
+		@Override
+		IndexComparator getComparator(Locale locale, boolean caseSensitive) {
+			return (left, right) -> Long.compare(values.get(left), values.get(right));
+		}
+	}
+
+	/**
+	 * A column of enum ordinals. The constants are written by name, so that the file survives reordering them.
+	 */
+	private static final class MappedEnumColumn extends MappedColumn {
+
+		private final Enum<?>[] constants;
+		private final IntBuffer ordinals;
+
+		/**
+		 * @throws IOException When a constant is renamed or removed since the file was written.
+		 */
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		private MappedEnumColumn(Class<?> type, String[] names, ByteBuffer nulls, IntBuffer ordinals) throws IOException {
+			super(nulls);
+			this.constants = new Enum<?>[names.length];
+			this.ordinals = ordinals;
+
+			for (int i = 0; i < names.length; i++) {
+				try {
+					constants[i] = Enum.valueOf((Class) type, names[i]);
+				}
+				catch (IllegalArgumentException e) {
+					throw new IOException("Cannot resolve constant of mapped column: " + type.getName() + "." + names[i], e);
+				}
+			}
+		}
+
+		@Override
+		Object get(int index) {
+			return isNull(index) ? null : constants[ordinals.get(index)];
+		}
+
+		/**
+		 * Plain values are resolved to the matching ordinals once, by equality or else by lowercased string
+		 * representation.
+		 */
+		@Override
+		IntPredicate compile(Object criteriaValue, Locale locale) {
+			if (!DatasetColumn.isPlain(criteriaValue)) {
+				return null;
+			}
+
+			boolean matchNull = stream(criteriaValue).anyMatch(Objects::isNull);
+			boolean[] matches = new boolean[constants.length];
+
+			for (int i = 0; i < constants.length; i++) {
+				Enum<?> constant = constants[i];
+				matches[i] = stream(criteriaValue).anyMatch(value -> Objects.equals(constant, value) || Objects.equals(lower(constant, locale), lower(value, locale)));
+			}
+
+			return i -> isNull(i) ? matchNull : matches[ordinals.get(i)];
+		}
+
+		@Override
+		IndexComparator getComparator(Locale locale, boolean caseSensitive) {
+			return (left, right) -> Integer.compare(constants[ordinals.get(left)].ordinal(), constants[ordinals.get(right)].ordinal());
+		}
+	}
+
+	/**
+	 * A column of UTF-8 strings along with their offsets. Criteria are left to the {@link PropertyMatcher}, which
+	 * lowercases the string at most once. The strings are sorted by their rank in the collation order, which is
+	 * computed only once per locale and case sensitivity.
+	 */
+	private static final class MappedStringColumn extends MappedColumn {
+
+		private final IntBuffer offsets;
+		private final ByteBuffer data;
+		private final Map<List<Object>, int[]> ranks = newCache(MAX_CACHED_RANKS);
+
+		private MappedStringColumn(ByteBuffer nulls, IntBuffer offsets, ByteBuffer data) {
+			super(nulls);
+			this.offsets = offsets;
+			this.data = data;
+		}
+
+		@Override
+		Object get(int index) {
+			if (isNull(index)) {
+				return null;
+			}
+
+			int offset = offsets.get(index);
+			byte[] bytes = new byte[offsets.get(index + 1) - offset];
+
+			for (int i = 0; i < bytes.length; i++) {
+				bytes[i] = data.get(offset + i);
+			}
+
+			return new String(bytes, UTF_8);
+		}
+
+		@Override
+		IntPredicate compile(Object criteriaValue, Locale locale) {
+			return null;
+		}
+
+		@Override
+		IndexComparator getComparator(Locale locale, boolean caseSensitive) {
+			int[] ranks = computeIfAbsent(this.ranks, asList(locale, caseSensitive), key -> rank(locale, caseSensitive));
+			return (left, right) -> Integer.compare(ranks[left], ranks[right]);
+		}
+
+		/**
+		 * Returns the rank of each string in the collation order, whereby equal strings get the same rank. The
+		 * collation keys are only held during the computation.
+		 */
+		private int[] rank(Locale locale, boolean caseSensitive) {
+			int size = offsets.limit() - 1;
+			Collator collator = Collator.getInstance(locale);
+			CollationKey[] keys = new CollationKey[size];
+			int[] index = IntStream.range(0, size).filter(i -> !isNull(i)).toArray();
+
+			for (int i : index) {
+				String value = (String) get(i);
+				keys[i] = collator.getCollationKey(caseSensitive ? value : lower(value, locale));
+			}
+
+			Dataset.mergeSort(index.clone(), index, 0, index.length, (left, right) -> keys[left].compareTo(keys[right]));
+			int[] ranks = new int[size];
+
+			for (int i = 0; i < index.length; i++) {
+				ranks[index[i]] = (i > 0 && keys[index[i]].compareTo(keys[index[i - 1]]) == 0) ? ranks[index[i - 1]] : i;
+			}
+
+			return ranks;
+		}
+	}
+
+	/**
+	 * Writes a column into temporary files, which are deleted on close.
+	 */
+	private static final class ColumnWriter implements Closeable {
+
+		private final PropertyPath propertyPath;
+		private final Class<?> type;
+		private final int bytesPerRow;
+		private final BitSet nulls = new BitSet();
+		private final Path valuesFile;
+		private final Path dataFile;
+		private final DataOutputStream values;
+		private final DataOutputStream data;
+
+		private ColumnWriter(PropertyPath propertyPath, Path file) throws IOException {
+			Class<?> longType = propertyPath.isResolved() && !propertyPath.isCollection() ? DatasetColumn.getLongType(propertyPath.getType()) : null;
+
+			if (longType == null && (!propertyPath.isResolved() || propertyPath.isCollection() || !(propertyPath.getType().isEnum() || propertyPath.getType() == String.class))) {
+				throw new IllegalArgumentException("property cannot be mapped: " + propertyPath.getPath());
+			}
+
+			this.propertyPath = propertyPath;
+			this.type = (longType != null) ? longType : propertyPath.getType();
+			this.bytesPerRow = (longType != null) ? Long.BYTES : Integer.BYTES;
+			Path directory = file.toAbsolutePath().getParent();
+			Path valuesFile = Files.createTempFile(directory, file.getFileName().toString(), ".values");
+			Path dataFile = null;
+			DataOutputStream values = null;
+
+			try {
+				dataFile = Files.createTempFile(directory, file.getFileName().toString(), ".data");
+				values = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(valuesFile)));
+				this.data = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(dataFile)));
+			}
+			catch (IOException | RuntimeException e) {
+				delete(e, values, valuesFile, dataFile); // Else they leak, because this writer is never closed.
+				throw e;
+			}
+
+			this.valuesFile = valuesFile;
+			this.dataFile = dataFile;
+			this.values = values;
+		}
+
+		private static void delete(Exception exception, Closeable stream, Path... files) {
+			try {
+				if (stream != null) {
+					stream.close();
+				}
+
+				for (Path file : files) {
+					if (file != null) {
+						Files.deleteIfExists(file);
+					}
+				}
+			}
+			catch (IOException e) {
+				exception.addSuppressed(e);
+			}
+		}
+
+		private void write(int index, Object row) throws IOException {
+			Object value = propertyPath.getValue(row);
+
+			if (value == null) {
+				nulls.set(index);
+			}
+			else if (bytesPerRow == Long.BYTES ? value.getClass() != type : !type.isInstance(value)) {
+				throw new IllegalArgumentException("property cannot be mapped: " + propertyPath.getPath() + " has a " + value.getClass().getName());
+			}
+
+			if ((index + 2L) * bytesPerRow > Integer.MAX_VALUE) { // Including the end offset of the last string.
+				throw new IllegalArgumentException("property exceeds 2 GB: " + propertyPath.getPath());
+			}
+
+			if (type == String.class) {
+				values.writeInt(data.size());
+				writeData((value == null) ? new byte[0] : ((String) value).getBytes(UTF_8));
+			}
+			else if (type.isEnum()) {
+				values.writeInt((value == null) ? -1 : ((Enum<?>) value).ordinal());
+			}
+			else {
+				values.writeLong((value == null) ? 0 : encode(value));
+			}
+		}
+
+		private void writeData(byte[] bytes) throws IOException {
+			if (data.size() + (long) bytes.length > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("property exceeds 2 GB: " + propertyPath.getPath());
+			}
+
+			data.write(bytes);
+		}
+
+		private long encode(Object value) {
+			try {
+				return DatasetColumn.toLong(value);
+			}
+			catch (ArithmeticException tooFarAway) {
+				throw new IllegalArgumentException("property cannot be mapped: " + propertyPath.getPath() + " has " + value, tooFarAway);
+			}
+		}
+
+		/**
+		 * Finishes this column and writes its header into given header.
+		 */
+		private void finish(DataOutputStream header) throws IOException {
+			if (type == String.class) {
+				values.writeInt(data.size()); // The end offset of the last string.
+			}
+
+			values.close();
+			data.close();
+			Object[] constants = type.isEnum() ? type.getEnumConstants() : new Object[0];
+			header.writeUTF(propertyPath.getPath());
+			header.writeUTF(type.getName());
+			header.writeInt(constants.length);
+
+			for (Object constant : constants) {
+				header.writeUTF(((Enum<?>) constant).name());
+			}
+
+			header.writeLong(Files.size(dataFile));
+		}
+
+		private void writeColumn(DataOutputStream output, int size) throws IOException {
+			output.write(Arrays.copyOf(nulls.toByteArray(), (size + 7) / 8));
+			Files.copy(valuesFile, output);
+			Files.copy(dataFile, output);
+		}
+
+		@Override
+		public void close() throws IOException {
+			values.close();
+			data.close();
+			Files.deleteIfExists(valuesFile);
+			Files.deleteIfExists(dataFile);
+		}
+	}
+
+
+	// Helpers --------------------------------------------------------------------------------------------------------
+
+	private Class<?> loadClass(String name) throws IOException {
+		try {
+			return Class.forName(name, false, type.getClassLoader());
+		}
+		catch (ClassNotFoundException e) {
+			throw new IOException("Cannot load type of mapped column: " + name, e);
+		}
+	}
+
+	private static String lower(Object value, Locale locale) {
+		return value == null ? null : value.toString().toLowerCase(locale);
+	}
+
+}
@@ -13,33 +13,20 @@
 package org.omnifaces.optimusfaces.model;
 
 import static java.lang.Math.min;
-import static java.util.Collections.singletonMap;
-import static java.util.Collections.unmodifiableList;
-import static java.util.stream.Collectors.toList;
-import static org.omnifaces.utils.Lang.isEmpty;
-import static org.omnifaces.utils.reflect.Reflections.invokeMethod;
-import static org.omnifaces.utils.stream.Streams.stream;
+import static java.util.Collections.emptyMap;
 
-import java.beans.IntrospectionException;
-import java.beans.Introspector;
-import java.beans.PropertyDescriptor;
-import java.lang.reflect.Method;
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
-import java.text.Collator;
-import java.util.AbstractMap;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Comparator;
+import java.io.IOException;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Objects;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
 import java.util.function.Supplier;
 
-import org.omnifaces.persistence.criteria.Criteria;
+import org.omnifaces.optimusfaces.model.PagedDataModel.StreamSource;
 import org.omnifaces.persistence.model.Identifiable;
 import org.omnifaces.persistence.model.dto.Page;
 import org.omnifaces.utils.collection.PartialResultList;
@@ -48,7 +35,8 @@ import org.primefaces.component.datatable.DataTable;
 import org.primefaces.model.SortMeta;
 
 /**
- * Use {@link PagedDataModel#nonLazy(List)} to build one.
+ * Use {@link PagedDataModel#nonLazy(List)}, {@link PagedDataModel#nonLazy(Dataset)},
+ * {@link PagedDataModel#nonLazy(MappedDataset)} or {@link PagedDataModel#nonLazy(StreamSource)} to build one.
  *
  * @see PagedDataModel
  * @author Bauke Scholtz
@@ -59,234 +47,115 @@ public final class NonLazyPagedDataModel<E extends Identifiable<?>> extends Lazy
 
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * The context parameter name to specify the minimum amount of rows from which filtering and sorting of non-lazy
+	 * data runs in parallel. Defaults to 50000.
+	 */
+	public static final String PARAM_NAME_PARALLEL_THRESHOLD = "org.omnifaces.optimusfaces.NON_LAZY_PARALLEL_THRESHOLD";
+
+	/**
+	 * The context parameter name to specify the ratio of the rows to the needed rows from which only the needed rows of
+	 * an unsorted ordering are picked via a bounded heap instead of sorting all rows. Defaults to 16, i.e. when less
+	 * than 1/16th of the rows is needed. A bounded heap costs <code>n log k</code> but can't be cached for other pages,
+	 * a full sort costs <code>n log n</code> but can. Measure with your own data before tuning it.
+	 */
+	public static final String PARAM_NAME_TOP_K_RATIO = "org.omnifaces.optimusfaces.NON_LAZY_TOP_K_RATIO";
+
 
 	// Internal properties --------------------------------------------------------------------------------------------
 
-	private List<E> allData;
+	private Dataset<E> dataset;
+	private MappedDataset<E> mappedDataset;
+	private StreamSource<E> source;
 
 
 	// Constructors ---------------------------------------------------------------------------------------------------
 
-	NonLazyPagedDataModel(List<E> allData, LinkedHashMap<String, Boolean> defaultOrdering, Map<String, Object> predefinedCriteria, Supplier<Map<Getter<?>, Object>> dynamicCriteria) {
-		super(null, defaultOrdering, predefinedCriteria, dynamicCriteria);
-		this.allData = unmodifiableList(allData);
+	NonLazyPagedDataModel(Dataset<E> dataset, LinkedHashMap<String, Boolean> defaultOrdering, Map<String, Object> predefinedCriteria, Supplier<Map<Getter<?>, Object>> dynamicCriteria, Executor executor) {
+		super(null, defaultOrdering, predefinedCriteria, dynamicCriteria, false, executor, dataset.getType());
+		this.dataset = dataset;
+	}
+
+	NonLazyPagedDataModel(MappedDataset<E> mappedDataset, LinkedHashMap<String, Boolean> defaultOrdering, Map<String, Object> predefinedCriteria, Supplier<Map<Getter<?>, Object>> dynamicCriteria, Executor executor) {
+		super(null, defaultOrdering, predefinedCriteria, dynamicCriteria, false, executor, mappedDataset.getType());
+		this.mappedDataset = mappedDataset;
+	}
+
+	NonLazyPagedDataModel(StreamSource<E> source, LinkedHashMap<String, Boolean> defaultOrdering, Map<String, Object> predefinedCriteria, Supplier<Map<Getter<?>, Object>> dynamicCriteria, Executor executor) {
+		super(null, defaultOrdering, predefinedCriteria, dynamicCriteria, false, executor, null);
+		this.source = source;
 	}
 
 	@Override
-	@SuppressWarnings("unchecked")
 	protected PartialResultList<E> load(Page page, boolean estimateTotalNumberOfResults) {
 		DataTable table = (DataTable) getDataComponent();
-		List<E> data = new ArrayList<>(allData);
-
-		if (!data.isEmpty()) {
-			Class<E> type = (Class<E>) data.stream().filter(Objects::nonNull).map(Object::getClass).findFirst().orElse(null);
-
-			if (type != null) {
-				if (!page.getRequiredCriteria().isEmpty() || !page.getOptionalCriteria().isEmpty()) {
-					Map<List<Method>, Entry<String, Object>> requiredCriteria = resolveGetters(type, page.getRequiredCriteria());
-					Map<List<Method>, Entry<String, Object>> optionalCriteria = resolveGetters(type, page.getOptionalCriteria());
-					BeanPropertyFilter filter = new BeanPropertyFilter(table, requiredCriteria, optionalCriteria);
-					data = data.stream().filter(filter::matches).collect(toList());
-				}
-
-				if (data.size() > 1) {
-					Map<List<Method>, Entry<String, Boolean>> ordering = resolveGetters(type, page.getOrdering());
-					data.sort(new BeanPropertyComparator(table, ordering));
-				}
-			}
-		}
-
-		int offset = min(data.size(), page.getOffset());
-		int limit = min(data.size() - offset, page.getLimit());
-		return new PartialResultList<>(new ArrayList<>(data.subList(offset, offset + limit)), offset, data.size());
+		Map<String, SortMeta> sortBy = table.getActiveSortMeta();
+		Locale locale = table.resolveDataLocale();
+		Map<String, SortMeta> activeSortBy = (sortBy != null) ? sortBy : emptyMap();
+		Entry<List<E>, Integer> result = (dataset != null) ? dataset.getPage(page, locale, activeSortBy)
+			: (mappedDataset != null) ? mappedDataset.getPage(page, locale, activeSortBy)
+			: Dataset.getPage(source, page, locale, activeSortBy);
+		return new PartialResultList<>(result.getKey(), min(result.getValue(), page.getOffset()), result.getValue());
 	}
 
 	/**
-	 * Optimized version of PrimeFaces FilterFeature which does not use EL to resolve properties.
+	 * All data is already in memory, so export it in a single chunk. Only the stream of a source is exported in chunks
+	 * of the default size.
 	 */
-	private class BeanPropertyFilter {
-
-		private final Locale locale;
-		private final Map<List<Method>, Entry<String, Object>> requiredCriteria;
-		private final Map<List<Method>, Entry<String, Object>> optionalCriteria;
-
-		public BeanPropertyFilter(DataTable table, Map<List<Method>, Entry<String, Object>> requiredCriteria, Map<List<Method>, Entry<String, Object>> optionalCriteria) {
-	        this.locale = table.resolveDataLocale();
-			this.requiredCriteria = requiredCriteria;
-			this.optionalCriteria = optionalCriteria;
-		}
-
-		public boolean matches(E entity) {
-			if (entity == null) {
-				return true; // Not our problem.
-			}
-
-			for (Entry<List<Method>, Entry<String, Object>> criteria : requiredCriteria.entrySet()) {
-				if (!matches(entity, criteria)) {
-					return false;
-				}
-			}
-
-			for (Entry<List<Method>, Entry<String, Object>> criteria : optionalCriteria.entrySet()) {
-				if (matches(entity, criteria)) {
-					return true;
-				}
-			}
-
-			return optionalCriteria.isEmpty();
-		}
-
-		private boolean matches(E entity, Entry<List<Method>, Entry<String, Object>> criteria) {
-			Object propertyValue = invokeMethods(entity, criteria.getKey(), null, false);
-			Object criteriaValue = criteria.getValue().getValue();
-
-			if (propertyValue instanceof Collection && !(criteriaValue instanceof Criteria)) {
-				return isEmpty(criteriaValue) || stream(criteriaValue).allMatch(value -> ((Collection<?>) propertyValue).contains(value));
-			}
-			else {
-				return stream(criteriaValue).anyMatch(value -> {
-					return (value instanceof Criteria && ((Criteria<?>) value).applies(propertyValue))
-							|| (Objects.equals(propertyValue, value))
-							|| (Objects.equals(lower(propertyValue, locale), lower(value, locale)));
-				});
-			}
-		}
+	@Override
+	protected int getExportChunkSize() {
+		return (source != null) ? super.getExportChunkSize() : Integer.MAX_VALUE;
 	}
 
 	/**
-	 * Optimized version of PrimeFaces SortFeature which does not use EL to resolve properties.
+	 * The stream of a source is exported in the ordering of the table by streaming all rows once per chunk, because
+	 * sorting it at once would need to hold all rows. Each pass keeps only one chunk in a bounded heap. So an export of
+	 * <code>n</code> rows costs <code>n / chunkSize</code> passes over the stream, which you can reduce by a larger
+	 * chunk size via the {@value LazyPagedDataModel#PARAM_NAME_EXPORT_CHUNK_SIZE} context parameter.
 	 */
-	private class BeanPropertyComparator implements Comparator<E> {
-
-		private final Locale locale;
-		private final Collator collator;
-		private final Map<String, SortMeta> sortBy;
-		private final Map<List<Method>, Entry<String, Boolean>> ordering;
-
-		public BeanPropertyComparator(DataTable table, Map<List<Method>, Entry<String, Boolean>> ordering) {
-			this.locale = table.resolveDataLocale();
-			this.collator = Collator.getInstance(locale);
-	        this.sortBy = table.getActiveSortMeta();
-			this.ordering = ordering;
-		}
-
-		public BeanPropertyComparator(BeanPropertyComparator parent, Map<List<Method>, Entry<String, Boolean>> remainingOrdering) {
-			this.locale = parent.locale;
-			this.collator = parent.collator;
-	        this.sortBy = parent.sortBy;
-			this.ordering = remainingOrdering;
-		}
-
-		@Override
-		public int compare(E left, E right) {
-			for (Entry<List<Method>, Entry<String, Boolean>> getter : ordering.entrySet()) {
-				Object leftProperty = left != null ? invokeMethods(left, getter.getKey(), this, getter.getValue().getValue()) : null;
-				Object rightProperty = right != null ? invokeMethods(right, getter.getKey(), this, getter.getValue().getValue()) : null;
-				SortMeta sortMeta = sortBy.get(getter.getValue().getKey());
-				int result = compareProperties(leftProperty, rightProperty, sortMeta) * (getter.getValue().getValue() ? 1 : -1);
-
-				if (result != 0) {
-					return result;
-				}
-			}
-
-			return 0;
+	@Override
+	protected void forEachExportChunk(int chunkSize, ChunkConsumer<List<E>> chunkConsumer) throws IOException {
+		if (source != null) {
+			Page firstChunkPage = getFirstExportChunkPage(chunkSize);
+			DataTable table = (DataTable) getDataComponent();
+			Locale locale = table.resolveDataLocale();
+			Dataset.forEachChunk(source, firstChunkPage, locale, getSortKey(firstChunkPage, table, locale), chunkConsumer);
 		}
-
-		@SuppressWarnings("unchecked")
-		private int compareProperties(Object left, Object right, SortMeta sortMeta) {
-			if (Objects.equals(left, right)) {
-				return 0;
-			}
-			else if (left == null) {
-				return sortMeta != null ? sortMeta.getNullSortOrder() : 1;
-			}
-			else if (right == null) {
-				return sortMeta != null ? sortMeta.getNullSortOrder() : -1;
-			}
-			else if (left instanceof String && right instanceof String) {
-				if (sortMeta != null && sortMeta.isCaseSensitiveSort()) {
-					return collator.compare(left, right);
-				}
-				else {
-					return collator.compare(lower(left, locale), lower(right, locale));
-				}
-			}
-			else if (left instanceof Comparable && right instanceof Comparable) {
-				return ((Comparable<Object>) left).compareTo(right);
-			}
-			else {
-				return compareProperties(left.toString(), right.toString(), sortMeta);
-			}
+		else {
+			super.forEachExportChunk(chunkSize, chunkConsumer);
 		}
 	}
 
-
-	// Helpers --------------------------------------------------------------------------------------------------------
-
-	private static <T> Map<List<Method>, Entry<String, T>> resolveGetters(Class<?> type, Map<String, T> properties) {
-		Map<List<Method>, Entry<String, T>> getters = new LinkedHashMap<>();
-
-		for (Entry<String, T> entry : properties.entrySet()) {
-			Class<?> beanClass = type;
-			List<Method> methods = new ArrayList<>(2);
-
-			for (String propertyName : entry.getKey().split("\\.")) {
-				Method getter = resolveGetter(beanClass, propertyName);
-				methods.add(getter);
-				beanClass = getter.getReturnType();
-
-				if (Collection.class.isAssignableFrom(beanClass)) {
-					Type genericReturnType = getter.getGenericReturnType();
-
-					if (genericReturnType instanceof ParameterizedType) {
-						beanClass = (Class<?>) ((ParameterizedType) genericReturnType).getActualTypeArguments()[0];
-					}
-				}
-			}
-
-			getters.put(methods, entry);
+	/**
+	 * The stream of a source is exported in the ordering of the table, see
+	 * {@link #forEachExportChunk(int, ChunkConsumer)}. The estimated total number of rows is then the current row
+	 * count.
+	 */
+	@Override
+	Entry<Integer, ExportChunks<E>> getExportChunksInBackground() {
+		if (source == null) {
+			return super.getExportChunksInBackground();
 		}
 
-		return getters;
+		StreamSource<E> source = this.source;
+		Page firstChunkPage = getFirstExportChunkPage(getExportChunkSize());
+		DataTable table = (DataTable) getDataComponent();
+		Locale locale = table.resolveDataLocale(); // In current thread as it needs the faces context.
+		List<Object> sortKey = getSortKey(firstChunkPage, table, locale);
+		return new SimpleImmutableEntry<>(getRowCount(), chunkConsumer -> Dataset.forEachChunk(source, firstChunkPage, locale, sortKey, chunkConsumer));
 	}
 
-	private static Method resolveGetter(Class<?> beanClass, String propertyName) {
-		try {
-			return stream(Introspector.getBeanInfo(beanClass).getPropertyDescriptors())
-				.filter(property -> property.getName().equals(propertyName))
-				.map(PropertyDescriptor::getReadMethod)
-				.findFirst().orElse(null);
-		}
-		catch (IntrospectionException e) {
-			throw new UnsupportedOperationException(e);
-		}
+	private static List<Object> getSortKey(Page page, DataTable table, Locale locale) {
+		Map<String, SortMeta> sortBy = table.getActiveSortMeta();
+		return Dataset.getSortKey(page.getOrdering(), locale, (sortBy != null) ? sortBy : emptyMap());
 	}
 
-	@SuppressWarnings({ "unchecked", "rawtypes" })
-	private Object invokeMethods(Object instance, List<Method> methods, BeanPropertyComparator comparator, boolean ascending) {
-		Object result = instance;
-
-		for (int i = 0; i < methods.size(); i++) {
-			if (result instanceof List) {
-				List<Method> remainingMethods = methods.subList(i, methods.size());
-
-				if (!remainingMethods.isEmpty() && comparator != null && ((List<?>) result).size() > 1) {
-					((List) result).sort(new BeanPropertyComparator(comparator, singletonMap(remainingMethods, new AbstractMap.SimpleEntry<>(null, ascending))));
-				}
-
-				return stream(result).map(item -> invokeMethods(item, remainingMethods, comparator, ascending)).collect(toList());
-			}
-			else {
-				result = invokeMethod(result, methods.get(i));
-			}
-		}
-
-		return result;
-	}
-
-	private static String lower(Object value, Locale locale) {
-		return value == null ? null : value.toString().toLowerCase(locale);
+	/**
+	 * All data is already in memory, so there's nothing to load in background.
+	 */
+	@Override
+	protected CompletionStage<PartialResultList<E>> loadInBackground(Page page, boolean estimateTotalNumberOfResults) {
+		return null;
 	}
 
-}
\ No newline at end of file
+}
@@ -22,6 +22,9 @@ import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
 
@@ -227,6 +230,54 @@ import org.primefaces.model.Visibility;
  * Note that you must return a {@link LinkedHashMap} with {@link Getter} as key and {@link Expression} as value and
  * that the mapping must be in exactly the same order as constructor arguments of your DTO.
  *
+ * <h4>Fetch plan</h4>
+ * <p>
+ * Columns representing a relationship, such as <code>address.city</code> or <code>phones.number</code>, are by default
+ * lazily loaded per row during rendering, which may cause one extra query per row. You can let the model pass the
+ * <code>field</code> paths of the columns as a {@link FetchPlan} to the loader so that those relationships are
+ * fetched in the very same query. Rendering a page will then take a constant number of queries.
+ * <pre>
+ * &#64;Stateless
+ * public class YourEntityService extends BaseEntityService&lt;YourEntity&gt; {
+ *
+ *     public PartialResultList&lt;YourEntity&gt; getPageWithFetchPlan(Page page, boolean count, FetchPlan fetchPlan) {
+ *         return getPage(page, count, (criteriaBuilder, query, root) -&gt; {
+ *             fetchPlan.fetch(query, root);
+ *         });
+ *     }
+ *
+ * }
+ * </pre>
+ * <pre>
+ * model = PagedDataModel.lazyWithFetchPlan(service::getPageWithFetchPlan).build();
+ * </pre>
+ * <p>
+ * The fetches are only applied on the query selecting the entities, not on the count query.
+ * <p>
+ * In case the table has columns representing a to-many relationship, such as <code>phones.number</code>, then only
+ * the first one is fetched, see {@link FetchPlan#fetch(javax.persistence.criteria.AbstractQuery,
+ * javax.persistence.criteria.Root)}. The page is then limited the same way as when the query builder of the service
+ * fetches that to-many relationship by itself.
+ *
+ * <h4>Asynchronous loading</h4>
+ * <p>
+ * In case you'd like to let the loader run on a different thread than the request thread, return a
+ * {@link CompletionStage} and use {@link PagedDataModel#lazyAsync(AsyncPartialResultListLoader)}. The model still
+ * waits for the current page, including its count, before rendering, so this doesn't load the page and the count in
+ * parallel. It only allows the model to load in the background without occupying a thread of its own, such as when
+ * prefetching the next page via {@link Builder#prefetch()}.
+ * <pre>
+ * &#64;Resource
+ * private ManagedExecutorService executor;
+ *
+ * public CompletionStage&lt;PartialResultList&lt;YourEntity&gt;&gt; getPageAsync(Page page, boolean count, FetchPlan fetchPlan) {
+ *     return CompletableFuture.supplyAsync(() -&gt; getPage(page, count, fetchPlan), executor);
+ * }
+ * </pre>
+ * <pre>
+ * model = PagedDataModel.lazyAsync(service::getPageAsync).prefetch().build();
+ * </pre>
+ *
  *
  * <h3 id="criteria-backend"><a href="#criteria-backend">Providing specific criteria in backend</a></h3>
  * <p>
@@ -355,6 +406,64 @@ import org.primefaces.model.Visibility;
  * <p>
  * On contrary to lazy loading, which requires the entities to be of type {@link BaseEntity}, you can here provide
  * entities just of type {@link Identifiable} which is easier to apply on DTOs.
+ * <p>
+ * The list is treated as immutable. The filtered and sorted results are cached, so paging through them is cheap. From
+ * 50000 rows on, filtering and sorting runs in parallel on a pool bounded to half of the available processors. This
+ * threshold is configurable via the {@value NonLazyPagedDataModel#PARAM_NAME_PARALLEL_THRESHOLD} context parameter.
+ * When only the first pages of a sorting are needed, then only their rows are picked instead of sorting all rows. The
+ * ratio from which this happens is configurable via the {@value NonLazyPagedDataModel#PARAM_NAME_TOP_K_RATIO} context
+ * parameter.
+ * <p>
+ * In case the same list is presented in many views, such as reference data, then you can share it, along with its
+ * cached results, across all views and users as a {@link Dataset} in an eagerly initialized application scoped bean,
+ * so that it doesn't end up in every view state. The name given via {@link Dataset#share(String)} is then the only
+ * thing which ends up in the serialized view state.
+ * <pre>
+ * &#64;Named
+ * &#64;Eager
+ * &#64;ApplicationScoped
+ * public class YourReferenceData {
+ *
+ *     private Dataset&lt;YourEntity&gt; dataset;
+ *
+ *     &#64;PostConstruct
+ *     public void init() {
+ *         dataset = Dataset.of(createItSomehow()).share("yourReferenceData");
+ *     }
+ *
+ *     public Dataset&lt;YourEntity&gt; getDataset() {
+ *         return dataset;
+ *     }
+ *
+ * }
+ * </pre>
+ * <p>
+ * Whereby the view scoped backing bean builds its model as below.
+ * <pre>
+ * model = PagedDataModel.nonLazy(yourReferenceData.getDataset()).build();
+ * </pre>
+ * <p>
+ * When the data changes, then you can apply the change via {@link Dataset#add(Object)},
+ * {@link Dataset#update(Object)} and {@link Dataset#remove(Object)}, which update the cached results incrementally
+ * instead of starting over.
+ * <p>
+ * When the data is too large to hold in memory, e.g. because it's read from a file or a cursor, then you can supply
+ * a stream of it instead. Every load streams all rows once, filters and orders them on the fly, and keeps only the
+ * rows until the limit of the page. The source is a {@link StreamSource}, which is serializable, so it must not
+ * capture anything which isn't serializable, such as a non-proxied service. An export in the ordering of the table
+ * streams all rows once per chunk, so that the rows don't need to be held. The source must therefore return the same
+ * rows in the same order on every call.
+ * <pre>
+ * model = PagedDataModel.nonLazy(yourService::streamAll).build();
+ * </pre>
+ * <p>
+ * When very large read-only data is presented over and over, e.g. reference data with millions of rows, then you can
+ * write it once into a columnar file via {@link MappedDataset#write(java.nio.file.Path, Class, List, Stream)} and
+ * memory-map it via {@link MappedDataset#open(java.nio.file.Path, Class, MappedDataset.Factory)}, so that it's
+ * filtered and sorted off-heap and only the entities of the page are created.
+ * <pre>
+ * model = PagedDataModel.nonLazy(yourReferenceData.getMappedDataset()).build();
+ * </pre>
  *
  *
  * <h3 id="presentation"><a href="#presentation">Presentation</a></h3>
@@ -388,7 +497,8 @@ import org.primefaces.model.Visibility;
  * </pre>
  * <p>
  * Any field property which is an instance of {@link Iterable} will automatically be wrapped in an <code>&lt;ui:repeat&gt;</code>.
- * You can always explicitly toggle this via <code>iterable</code> attribute.
+ * This is decided once during view build time when the entity type is known, see {@link Builder#entityType(Class)}, else
+ * on every cell. You can always explicitly toggle this via <code>iterable</code> attribute.
  * <pre>
  * &lt;op:column ... iterable="true" /&gt;
  * </pre>
@@ -558,16 +668,45 @@ import org.primefaces.model.Visibility;
  * Below are the available export related attributes and their default values.
  * <ul>
  * <li><code>columnTogglerButtonLabel</code>: <code>Columns</code>
+ * <li><code>exportMode</code>: <code>component</code>
  * <li><code>exportType</code>: <code>csv</code>
  * <li><code>exportButtonLabel</code>: <code>CSV</code>
  * <li><code>exportVisibleColumnsButtonLabel</code>: <code>Visible Columns</code>
  * <li><code>exportAllColumnsButtonLabel</code>: <code>All Columns</code>
  * <li><code>exportFilename</code>: <code>#{id}-#{of:formatDate(now, 'yyyyMMddHHmmss')}</code>
+ * <li><code>exportProgressLabel</code>: <code>Exporting…</code>
+ * <li><code>exportDownloadLabel</code>: <code>Download</code>
+ * <li><code>exportFailedLabel</code>: <code>Export failed</code>
+ * <li><code>exportRejectedLabel</code>: <code>Too many exports in progress, please try again later</code>
  * </ul>
  * <p>
  * Note: the <code>#{id}</code> of the <code>exportFilename</code> represents the ID of the
  * <code>&lt;op:dataTable&gt;</code>.
  * <p>
+ * The default export mode <code>component</code> delegates to <code>&lt;p:dataExporter&gt;</code>, which loads all
+ * rows at once. For large tables you can set <code>exportMode</code> to <code>stream</code>. The CSV export will
+ * then walk through the current filtering and sorting state with keyset paged chunks and write the rows straight to
+ * the response, so that memory usage stays constant. The next chunk is already loaded in background while the current
+ * chunk is being written, see also {@link Builder#executor(Executor)}. The chunks have by default 1000 rows, which is
+ * configurable via the {@value LazyPagedDataModel#PARAM_NAME_EXPORT_CHUNK_SIZE} context parameter. Columns without a
+ * custom <code>value</code> or <code>exportValue</code> are then exported directly via the getters of their
+ * <code>field</code>, bypassing EL and the component tree. The <code>exportType</code>, <code>exportPreProcessor</code>
+ * and <code>exportPostProcessor</code> attributes are then ignored.
+ * <pre>
+ * &lt;op:dataTable ... exportable="true" exportMode="stream"&gt;
+ * </pre>
+ * <p>
+ * Very large exports may take minutes and get cut off by proxies. You can then set <code>exportMode</code> to
+ * <code>background</code>. The CSV export will then be submitted as an {@link ExportJob} which writes to a temporary
+ * file, while a progress indicator polls the job. A download link appears once the job is done. As there's no faces
+ * context in the background, the values are obtained from the <code>field</code> of the columns rather than their
+ * <code>exportValue</code>. The running jobs are by default capped to 1 per user and 4 per node, which is
+ * configurable via the {@value ExportJob#PARAM_NAME_MAX_JOBS_PER_USER} and
+ * {@value ExportJob#PARAM_NAME_MAX_JOBS_PER_NODE} context parameters.
+ * <pre>
+ * &lt;op:dataTable ... exportable="true" exportMode="background"&gt;
+ * </pre>
+ * <p>
  * By default, every column is exportable. In the frontend you can optionally set <code>exportable</code> attribute of
  * <code>&lt;op:column&gt;</code> to <code>false</code> to make a column non-exportable, irrespective of its visibility.
  * <pre>
@@ -843,6 +982,17 @@ public interface PagedDataModel<E extends Identifiable<?>> extends Serializable
 		return field.replace('.', '_');
 	}
 
+	/**
+	 * Invoked when <code>&lt;op:column&gt;</code> is built without a custom <code>value</code> and
+	 * <code>iterable</code>. This decides once per column whether the cells should be rendered as a list of values,
+	 * instead of checking it on every cell. This is by default not known.
+	 * @param field The column field.
+	 * @return Whether the given field represents a collection, or <code>null</code> when this is not known.
+	 */
+	default Boolean isCollectionField(String field) {
+		return null;
+	}
+
 	/**
 	 * Invoked when <code>filterOptions</code> attribute of <code>&lt;op:column&gt;</code> is provided.
 	 * Problem is, the underlying <code>&lt;p:column&gt;</code> only supports <code>SelectItem[]</code> or
@@ -940,17 +1090,105 @@ public interface PagedDataModel<E extends Identifiable<?>> extends Serializable
 	@FunctionalInterface
 	public static interface PartialResultListLoader<E extends Identifiable<?>> {
 		PartialResultList<E> getPage(Page page, boolean estimateTotalNumberOfResults);
+
+		/**
+		 * Invoked by the lazy paged data model. The default implementation ignores the fetch plan.
+		 * @param page The page.
+		 * @param estimateTotalNumberOfResults Whether to estimate the total number of results.
+		 * @param fetchPlan The fetch plan derived from the columns of the table.
+		 * @return The loaded page.
+		 */
+		default PartialResultList<E> getPage(Page page, boolean estimateTotalNumberOfResults, FetchPlan fetchPlan) {
+			return getPage(page, estimateTotalNumberOfResults);
+		}
+	}
+
+	/**
+	 * Like {@link PartialResultListLoader}, but this one also takes the {@link FetchPlan} derived from the columns of
+	 * the table into account.
+	 *
+	 * @param <E> The generic base entity type.
+	 * @see FetchPlan
+	 */
+	@FunctionalInterface
+	public static interface FetchingPartialResultListLoader<E extends Identifiable<?>> extends PartialResultListLoader<E> {
+
+		@Override
+		PartialResultList<E> getPage(Page page, boolean estimateTotalNumberOfResults, FetchPlan fetchPlan);
+
+		@Override
+		default PartialResultList<E> getPage(Page page, boolean estimateTotalNumberOfResults) {
+			return getPage(page, estimateTotalNumberOfResults, FetchPlan.NONE);
+		}
+	}
+
+	/**
+	 * Like {@link FetchingPartialResultListLoader}, but this one returns a {@link CompletionStage} so that the lazy
+	 * paged data model doesn't need to block a thread of its own for background loads such as prefetching. The page
+	 * to render is still awaited as a whole.
+	 *
+	 * @param <E> The generic base entity type.
+	 * @see PagedDataModel#lazyAsync(AsyncPartialResultListLoader)
+	 */
+	@FunctionalInterface
+	public static interface AsyncPartialResultListLoader<E extends Identifiable<?>> extends FetchingPartialResultListLoader<E> {
+
+		/**
+		 * Invoked by the lazy paged data model.
+		 * @param page The page.
+		 * @param estimateTotalNumberOfResults Whether to estimate the total number of results.
+		 * @param fetchPlan The fetch plan derived from the columns of the table.
+		 * @return The completion stage of the loaded page.
+		 */
+		CompletionStage<PartialResultList<E>> getPageAsync(Page page, boolean estimateTotalNumberOfResults, FetchPlan fetchPlan);
+
+		/**
+		 * The default implementation blocks until {@link #getPageAsync(Page, boolean, FetchPlan)} is completed. When
+		 * it's completed exceptionally with a runtime exception or error, then that cause is rethrown as is instead of
+		 * wrapped in a {@link CompletionException}.
+		 */
+		@Override
+		default PartialResultList<E> getPage(Page page, boolean estimateTotalNumberOfResults, FetchPlan fetchPlan) {
+			try {
+				return getPageAsync(page, estimateTotalNumberOfResults, fetchPlan).toCompletableFuture().join();
+			}
+			catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				else if (e.getCause() instanceof Error) {
+					throw (Error) e.getCause();
+				}
+
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * The source of a new stream of all data of a non-lazy paged data model. It's serializable, because the paged data
+	 * model is serialized along with the view state, e.g. on session failover.
+	 *
+	 * @param <E> The generic base entity type.
+	 * @see PagedDataModel#nonLazy(StreamSource)
+	 */
+	@FunctionalInterface
+	public static interface StreamSource<E extends Identifiable<?>> extends Supplier<Stream<E>>, Serializable {
+		// Only specifies serializability.
 	}
 
 	/**
-	 * Use this if you want to build a lazy paged data model using a {@link BaseEntityService}.
+	 * Use this if you want to build a lazy paged data model using a {@link BaseEntityService}. Note that this doesn't
+	 * apply the {@link FetchPlan}, because the query builder of {@link BaseEntityService} is only accessible from within
+	 * the service. Use {@link #lazyWithFetchPlan(FetchingPartialResultListLoader)} with a service method applying it
+	 * instead.
 	 * @param <I> The generic ID type.
 	 * @param <E> The generic base entity type.
 	 * @param entityService The entity service.
 	 * @return A new paged data model builder.
 	 */
 	public static <I extends Comparable<I> & Serializable, E extends BaseEntity<I>> Builder<E> lazy(BaseEntityService<I, E> entityService) {
-		return new Builder<>(entityService::getPage);
+		return new Builder<>(entityService::getPage, entityService.getEntityType());
 	}
 
 	/**
@@ -964,6 +1202,34 @@ public interface PagedDataModel<E extends Identifiable<?>> extends Serializable
 		return new Builder<>(loader);
 	}
 
+	/**
+	 * Use this if you want to build a lazy paged data model using a custom
+	 * {@link BaseEntityService#getPage(Page, boolean)} implementation which also takes a {@link FetchPlan} argument
+	 * representing the <code>field</code> paths of the columns of the table. This has a different name than
+	 * {@link #lazy(PartialResultListLoader)}, so that a method reference to a service which also inherits
+	 * {@link BaseEntityService#getPage(Page, boolean)} methods is never ambiguous.
+	 * @param <E> The generic base entity type.
+	 * @param loader The custom {@link BaseEntityService#getPage(Page, boolean)} implementation taking a {@link FetchPlan}.
+	 * @return A new paged data model builder.
+	 * @see FetchPlan
+	 */
+	public static <E extends Identifiable<?>> Builder<E> lazyWithFetchPlan(FetchingPartialResultListLoader<E> loader) {
+		return new Builder<>(loader);
+	}
+
+	/**
+	 * Use this if you want to build a lazy paged data model using a custom asynchronous
+	 * {@link BaseEntityService#getPage(Page, boolean)} implementation which also takes a {@link FetchPlan} argument.
+	 * Note that the page and its count are still loaded by a single invocation of the loader.
+	 * @param <E> The generic base entity type.
+	 * @param loader The custom asynchronous {@link BaseEntityService#getPage(Page, boolean)} implementation.
+	 * @return A new paged data model builder.
+	 * @see AsyncPartialResultListLoader
+	 */
+	public static <E extends Identifiable<?>> Builder<E> lazyAsync(AsyncPartialResultListLoader<E> loader) {
+		return new Builder<>(loader);
+	}
+
 	/**
 	 * Use this if you want to build a non-lazy paged data model based on given list.
 	 * @param <E> The generic base entity type.
@@ -974,6 +1240,43 @@ public interface PagedDataModel<E extends Identifiable<?>> extends Serializable
 		return new Builder<>(allData);
 	}
 
+	/**
+	 * Use this if you want to build a non-lazy paged data model based on given dataset, which may be shared with other
+	 * paged data models, e.g. because it's held in an application scoped bean.
+	 * @param <E> The generic base entity type.
+	 * @param dataset The dataset of all data.
+	 * @return A new paged data model builder.
+	 * @see Dataset
+	 */
+	public static <E extends Identifiable<?>> Builder<E> nonLazy(Dataset<E> dataset) {
+		return new Builder<>(dataset);
+	}
+
+	/**
+	 * Use this if you want to build a non-lazy paged data model based on given memory-mapped dataset, which may be
+	 * shared with other paged data models, e.g. because it's held in an application scoped bean.
+	 * @param <E> The generic base entity type.
+	 * @param mappedDataset The memory-mapped dataset of all data.
+	 * @return A new paged data model builder.
+	 * @see MappedDataset
+	 */
+	public static <E extends Identifiable<?>> Builder<E> nonLazy(MappedDataset<E> mappedDataset) {
+		return new Builder<>(mappedDataset);
+	}
+
+	/**
+	 * Use this if you want to build a non-lazy paged data model based on a stream of given source, without holding all
+	 * data in memory. The source is invoked on every load and the stream is closed afterwards. The source is also
+	 * invoked in background when exporting in background, so it must not depend on the request. An export streams all
+	 * data once per chunk, so the source must return the same rows in the same order on every invocation.
+	 * @param <E> The generic base entity type.
+	 * @param source The source of a new stream of all data.
+	 * @return A new paged data model builder.
+	 */
+	public static <E extends Identifiable<?>> Builder<E> nonLazy(StreamSource<E> source) {
+		return new Builder<>(source);
+	}
+
 	/**
 	 * The paged data model builder.
 	 *
@@ -983,21 +1286,45 @@ public interface PagedDataModel<E extends Identifiable<?>> extends Serializable
 	public static class Builder<E extends Identifiable<?>> {
 
 		private List<E> allData;
+		private Dataset<E> dataset;
+		private MappedDataset<E> mappedDataset;
+		private StreamSource<E> source;
 		private PartialResultListLoader<E> loader;
+		private Class<E> entityType;
 
 		private LinkedHashMap<String, Boolean> predefinedOrdering;
 		private LinkedHashMap<String, Boolean> ordering = new LinkedHashMap<>(2);
 		private Map<String, Object> predefinedCriteria;
 		private Supplier<Map<Getter<E>, Object>> dynamicCriteria;
+		private boolean prefetch;
+		private boolean columnar;
+		private Executor executor;
 
 		private Builder(List<E> allData) {
 			this.allData = allData;
 		}
 
+		private Builder(Dataset<E> dataset) {
+			this.dataset = dataset;
+		}
+
+		private Builder(MappedDataset<E> mappedDataset) {
+			this.mappedDataset = mappedDataset;
+		}
+
+		private Builder(StreamSource<E> source) {
+			this.source = source;
+		}
+
 		private Builder(PartialResultListLoader<E> loader) {
 			this.loader = loader;
 		}
 
+		private Builder(PartialResultListLoader<E> loader, Class<E> entityType) {
+			this.loader = loader;
+			this.entityType = entityType;
+		}
+
 		/**
 		 * <p>
 		 * Set the predefined criteria. The map key represents the property path.
@@ -1145,6 +1472,105 @@ public interface PagedDataModel<E extends Identifiable<?>> extends Serializable
 			return this;
 		}
 
+		/**
+		 * <p>
+		 * Prefetch the next page in the background once the current page is loaded, so that paging forward doesn't need
+		 * to wait for the database. The prefetched page is only used when the next request asks for exactly that page,
+		 * else it's discarded. An {@link AsyncPartialResultListLoader} is invoked directly, a synchronous loader is
+		 * invoked via the {@link #executor(Executor)}. In case the executor would run it on the request thread anyway,
+		 * nothing is prefetched.
+		 *
+		 * @return This builder.
+		 * @throws IllegalStateException When this builder is not built for a lazy paged data model.
+		 */
+		public Builder<E> prefetch() {
+			if (loader == null) {
+				throw new IllegalStateException("Prefetching requires a lazy paged data model");
+			}
+
+			prefetch = true;
+			return this;
+		}
+
+		/**
+		 * <p>
+		 * Extract each property of the non-lazy data into a typed array on first use, so that filtering doesn't need to
+		 * invoke the getters of every row over and over. Integral and floating point numbers, <code>LocalDate</code>
+		 * and <code>Instant</code> properties go into a <code>long[]</code>, enum properties into an <code>int[]</code>
+		 * of ordinals and string properties into a <code>String[]</code> of lowercased values. Other properties are
+		 * still filtered via their getters. This costs one array per filtered property and is therefore opt-in.
+		 * <p>
+		 * This is only supported on a non-lazy paged data model of a list. A shared {@link Dataset} must be made
+		 * columnar via {@link Dataset#of(List, boolean)} instead.
+		 *
+		 * @return This builder.
+		 * @throws IllegalStateException When this builder is not built for a non-lazy paged data model of a list.
+		 */
+		public Builder<E> columnar() {
+			if (dataset != null) {
+				throw new IllegalStateException("Columnar extraction of a shared Dataset must be set via Dataset.of(List, boolean)");
+			}
+
+			if (allData == null) {
+				throw new IllegalStateException("Columnar extraction requires a non-lazy paged data model");
+			}
+
+			columnar = true;
+			return this;
+		}
+
+		/**
+		 * <p>
+		 * Set the entity type of a lazy paged data model built with a custom loader. This is already known when built
+		 * with a {@link BaseEntityService} or with non-lazy data. It's used to decide during view build time whether
+		 * the <code>field</code> of a <code>&lt;op:column&gt;</code> represents a collection, see
+		 * {@link PagedDataModel#isCollectionField(String)}. When it's not set, then this is checked on every cell.
+		 * <p>
+		 * The entity type can be set only once in this builder.
+		 *
+		 * @param entityType The entity type.
+		 * @return This builder.
+		 * @throws IllegalStateException When entity type is previously already set in this builder, or when this
+		 * builder is not built with a loader.
+		 */
+		public Builder<E> entityType(Class<E> entityType) {
+			if (loader == null) {
+				throw new IllegalStateException("Entity type can only be set on a lazy paged data model");
+			}
+
+			if (this.entityType != null) {
+				throw new IllegalStateException("Entity type is already set");
+			}
+
+			this.entityType = entityType;
+			return this;
+		}
+
+		/**
+		 * <p>
+		 * Set the executor for background work of the paged data model, such as prefetching the next page and
+		 * exporting. Defaults to {@link BackgroundExecutor#getDefault()}, which prefers the container's default
+		 * managed executor service and only falls back to virtual threads when explicitly enabled.
+		 * <p>
+		 * The executor is not serialized along with the paged data model, so after deserialization, e.g. on session
+		 * failover, the paged data model falls back to the default executor.
+		 * <p>
+		 * The executor can be set only once in this builder.
+		 *
+		 * @param executor The executor.
+		 * @return This builder.
+		 * @throws IllegalStateException When executor is previously already set in this builder.
+		 * @see BackgroundExecutor
+		 */
+		public Builder<E> executor(Executor executor) {
+			if (this.executor != null) {
+				throw new IllegalStateException("Executor is already set");
+			}
+
+			this.executor = executor;
+			return this;
+		}
+
 		/**
 		 * <p>
 		 * Build the paged data model.
@@ -1161,13 +1587,22 @@ public interface PagedDataModel<E extends Identifiable<?>> extends Serializable
 			Supplier rawDynamicCriteria = dynamicCriteria;
 
 			if (loader != null) {
-				return new LazyPagedDataModel<>(loader, ordering, predefinedCriteria, rawDynamicCriteria);
+				return new LazyPagedDataModel<>(loader, ordering, predefinedCriteria, rawDynamicCriteria, prefetch, executor, entityType);
+			}
+			else if (dataset != null) {
+				return new NonLazyPagedDataModel<>(dataset, ordering, predefinedCriteria, rawDynamicCriteria, executor);
 			}
 			else if (allData != null) {
-				return new NonLazyPagedDataModel<>(allData, ordering, predefinedCriteria, rawDynamicCriteria);
+				return new NonLazyPagedDataModel<>(Dataset.of(allData, columnar), ordering, predefinedCriteria, rawDynamicCriteria, executor);
+			}
+			else if (mappedDataset != null) {
+				return new NonLazyPagedDataModel<>(mappedDataset, ordering, predefinedCriteria, rawDynamicCriteria, executor);
+			}
+			else if (source != null) {
+				return new NonLazyPagedDataModel<>(source, ordering, predefinedCriteria, rawDynamicCriteria, executor);
 			}
 			else {
-				throw new IllegalStateException("You must provide non-null loader or allData.");
+				throw new IllegalStateException("You must provide non-null loader, allData, dataset, mappedDataset or source.");
 			}
 		}
 	}
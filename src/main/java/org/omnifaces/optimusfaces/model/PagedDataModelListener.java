@@ -0,0 +1,52 @@
+/*
+ * Copyright OmniFaces
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.optimusfaces.model;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+import javax.servlet.http.HttpSessionEvent;
+import javax.servlet.http.HttpSessionListener;
+
+/**
+ * <p>
+ * Initializes and destroys the application wide resources of the paged data model, such as the
+ * {@link BackgroundExecutor}, the shared datasets and the parallel pool of {@link Dataset} and the {@link ExportJob} files. This is
+ * automatically registered by the container.
+ *
+ * @see PagedDataModel
+ * @author Bauke Scholtz
+ */
+@WebListener
+public class PagedDataModelListener implements ServletContextListener, HttpSessionListener {
+
+	@Override
+	public void contextInitialized(ServletContextEvent event) {
+		BackgroundExecutor.initialize(event.getServletContext());
+	}
+
+	@Override
+	public void contextDestroyed(ServletContextEvent event) {
+		ExportJob.removeAllJobs();
+		BackgroundExecutor.destroy();
+		Dataset.unshareAll(event.getServletContext());
+		MappedDataset.unshareAll(event.getServletContext());
+		Dataset.shutdownParallelPool();
+	}
+
+	@Override
+	public void sessionDestroyed(HttpSessionEvent event) {
+		ExportJob.removeJobsOfSession(event.getSession().getId());
+	}
+
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright OmniFaces
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.optimusfaces.model;
+
+import static java.lang.invoke.MethodType.methodType;
+import static java.util.stream.Collectors.toList;
+import static org.omnifaces.utils.stream.Streams.stream;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * <p>
+ * The metadata of a dotted property path such as <code>address.city</code> or <code>phones.number</code> of a bean
+ * class, as used by the <code>field</code> of <code>&lt;op:column&gt;</code>. It is computed only once per bean class
+ * and path, and holds the accessor chain, the leaf type, whether it represents a collection and its element type.
+ * <p>
+ * The getters are resolved against the declared types of the path. When a property in the path represents a
+ * collection, then the remainder of the path is resolved on each of its items, and a list of those values is returned.
+ * When a property cannot be resolved against the declared type, e.g. because it's only available in a subclass, then
+ * the remainder of the path is resolved against the actual type of the value.
+ *
+ * @see PagedDataModel
+ * @author Bauke Scholtz
+ */
+public final class PropertyPath {
+
+	// Constants ------------------------------------------------------------------------------------------------------
+
+	private static final ClassValue<Map<String, PropertyPath>> PATHS = new ClassValue<Map<String, PropertyPath>>() {
+		@Override
+		protected Map<String, PropertyPath> computeValue(Class<?> type) {
+			return new ConcurrentHashMap<>();
+		}
+	};
+
+
+	// Properties -----------------------------------------------------------------------------------------------------
+
+	private final String path;
+	private final String[] propertyNames;
+	private final String[] remainingPaths;
+	private final Class<?>[] beanTypes;
+	private final MethodHandle[] getters;
+	private final Class<?> type;
+	private final boolean collection;
+	private final Class<?> elementType;
+
+
+	// Constructors ---------------------------------------------------------------------------------------------------
+
+	private PropertyPath(Class<?> beanClass, String path) {
+		this.path = path;
+		propertyNames = path.split("\\.");
+		remainingPaths = new String[propertyNames.length];
+		List<Class<?>> resolvedBeanTypes = new ArrayList<>(propertyNames.length);
+		List<MethodHandle> resolvedGetters = new ArrayList<>(propertyNames.length);
+		Class<?> beanType = beanClass;
+		Class<?> leafType = null;
+		Class<?> leafElementType = null;
+		boolean anyCollection = false;
+
+		for (int i = propertyNames.length - 1; i >= 0; i--) {
+			remainingPaths[i] = (i == propertyNames.length - 1) ? propertyNames[i] : propertyNames[i] + "." + remainingPaths[i + 1];
+		}
+
+		for (String propertyName : propertyNames) {
+			Method getter = (beanType != null && !Map.class.isAssignableFrom(beanType)) ? resolveGetter(beanType, propertyName) : null; // Map keys go first, like in EL.
+			MethodHandle handle = (getter != null) ? unreflect(getter) : null;
+
+			if (handle == null) {
+				break;
+			}
+
+			resolvedBeanTypes.add(beanType);
+			resolvedGetters.add(handle);
+			leafType = getter.getReturnType();
+			leafElementType = leafType;
+
+			if (Collection.class.isAssignableFrom(leafType)) {
+				anyCollection = true;
+				leafElementType = getElementType(getter.getGenericReturnType());
+			}
+
+			beanType = leafElementType;
+		}
+
+		beanTypes = resolvedBeanTypes.toArray(new Class<?>[resolvedBeanTypes.size()]);
+		getters = resolvedGetters.toArray(new MethodHandle[resolvedGetters.size()]);
+		boolean resolved = getters.length == propertyNames.length;
+		type = resolved ? leafType : null;
+		collection = resolved && anyCollection;
+		elementType = collection ? leafElementType : null;
+	}
+
+	/**
+	 * Returns the property path of given bean class and dotted path.
+	 * @param beanClass The bean class.
+	 * @param path The dotted path, such as <code>address.city</code> or <code>phones.number</code>.
+	 * @return The property path of given bean class and dotted path.
+	 */
+	public static PropertyPath of(Class<?> beanClass, String path) {
+		return PATHS.get(beanClass).computeIfAbsent(path, p -> new PropertyPath(beanClass, p));
+	}
+
+
+	// Actions --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Returns the value of this property path on given bean. Properties on a map are resolved as map keys, like in EL,
+	 * even when the map has a getter of the same name, such as <code>empty</code>. Other properties without a getter are
+	 * resolved as <code>null</code>.
+	 * @param bean The bean.
+	 * @return The value of this property path on given bean.
+	 */
+	public Object getValue(Object bean) {
+		return getValue(bean, 0, null);
+	}
+
+	/**
+	 * Returns the value of this property path on given bean. Properties without a getter, e.g. on a map, are resolved
+	 * via given fallback. Properties on a map are never resolved via a getter, so that map keys go first, like in EL.
+	 * @param bean The bean.
+	 * @param fallback The fallback which resolves a property without a getter, with the base and the property name as
+	 * arguments. May be <code>null</code>.
+	 * @return The value of this property path on given bean.
+	 */
+	public Object getValue(Object bean, BiFunction<Object, String, Object> fallback) {
+		return getValue(bean, 0, fallback);
+	}
+
+	private Object getValue(Object bean, int index, BiFunction<Object, String, Object> fallback) {
+		Object value = bean;
+
+		for (int i = index; i < propertyNames.length; i++) {
+			if (value == null) {
+				return null;
+			}
+
+			if (value instanceof Collection) {
+				int next = i;
+				return stream(value).map(item -> getValue(item, next, fallback)).collect(toList());
+			}
+
+			if (i >= getters.length || !beanTypes[i].isInstance(value)) {
+				PropertyPath remainingPath = of(value.getClass(), remainingPaths[i]);
+
+				if (remainingPath.getters.length > 0) {
+					return remainingPath.getValue(value, 0, fallback);
+				}
+
+				value = (fallback != null) ? fallback.apply(value, propertyNames[i])
+					: (value instanceof Map) ? ((Map<?, ?>) value).get(propertyNames[i])
+					: null;
+			}
+			else {
+				value = invoke(getters[i], value);
+			}
+		}
+
+		return value;
+	}
+
+
+	// Getters --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Returns the dotted path.
+	 * @return The dotted path.
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * Returns the declared type of the last property in the path, or <code>null</code> when the path cannot be fully
+	 * resolved against the declared types.
+	 * @return The declared type of the last property in the path.
+	 */
+	public Class<?> getType() {
+		return type;
+	}
+
+	/**
+	 * Returns whether the value of the path is a collection, i.e. whether any property in the path represents a
+	 * collection. This is <code>false</code> when the path cannot be fully resolved against the declared types.
+	 * @return Whether the value of the path is a collection.
+	 */
+	public boolean isCollection() {
+		return collection;
+	}
+
+	/**
+	 * Returns the element type of the collection when the value of the path is a collection, or <code>null</code> when
+	 * it isn't a collection or when the element type cannot be determined.
+	 * @return The element type of the collection when the value of the path is a collection.
+	 */
+	public Class<?> getElementType() {
+		return elementType;
+	}
+
+	/**
+	 * Returns whether the path can be fully resolved against the declared types.
+	 * @return Whether the path can be fully resolved against the declared types.
+	 */
+	public boolean isResolved() {
+		return getters.length == propertyNames.length;
+	}
+
+
+	// Object overrides -----------------------------------------------------------------------------------------------
+
+	@Override
+	public String toString() {
+		return "PropertyPath[" + path + "]";
+	}
+
+
+	// Helpers --------------------------------------------------------------------------------------------------------
+
+	private static Method resolveGetter(Class<?> beanClass, String propertyName) {
+		try {
+			return Arrays.stream(Introspector.getBeanInfo(beanClass).getPropertyDescriptors())
+				.filter(property -> property.getName().equals(propertyName))
+				.map(PropertyDescriptor::getReadMethod)
+				.findFirst().orElse(null);
+		}
+		catch (IntrospectionException e) {
+			throw new UnsupportedOperationException(e);
+		}
+	}
+
+	private static MethodHandle unreflect(Method getter) {
+		try {
+			getter.setAccessible(true); // E.g. public getter declared in non-public superclass.
+			return MethodHandles.lookup().unreflect(getter).asType(methodType(Object.class, Object.class));
+		}
+		catch (IllegalAccessException | RuntimeException e) {
+			return null; // Let the remainder be resolved against the actual type, or else the fallback.
+		}
+	}
+
+	private static Class<?> getElementType(Type genericType) {
+		if (genericType instanceof ParameterizedType) {
+			Type[] typeArguments = ((ParameterizedType) genericType).getActualTypeArguments();
+
+			if (typeArguments.length == 1 && typeArguments[0] instanceof Class) {
+				return (Class<?>) typeArguments[0];
+			}
+		}
+
+		return null;
+	}
+
+	private static Object invoke(MethodHandle getter, Object bean) {
+		try {
+			return getter.invokeExact(bean);
+		}
+		catch (RuntimeException | Error e) {
+			throw e;
+		}
+		catch (Throwable e) {
+			throw new UnsupportedOperationException(e);
+		}
+	}
+
+}
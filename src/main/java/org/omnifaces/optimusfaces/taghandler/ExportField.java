@@ -0,0 +1,88 @@
+/*
+ * Copyright OmniFaces
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.optimusfaces.taghandler;
+
+import javax.el.ValueExpression;
+import javax.el.VariableMapper;
+import javax.faces.component.UIComponent;
+import javax.faces.view.facelets.FaceletContext;
+import javax.faces.view.facelets.TagConfig;
+import javax.faces.view.facelets.TagHandler;
+
+/**
+ * <p>
+ * This is only used internally by <code>&lt;op:column&gt;</code>. It sets the variable {@value #VARIABLE_NAME} to the
+ * <code>field</code> of the column when neither <code>value</code> nor <code>exportValue</code> is specified on the
+ * tag, else to <code>null</code>. The tag file passes it to the attribute {@value #ATTRIBUTE_NAME} of the column, so
+ * that the export can obtain the value directly from the row via its getters instead of via EL on every cell.
+ * <p>
+ * This must be placed in the tag file before the <code>&lt;o:tagAttribute&gt;</code> of <code>value</code> and
+ * <code>exportValue</code>, because the variable mapper then still only holds the attributes specified on the tag.
+ *
+ * @author Bauke Scholtz
+ */
+public class ExportField extends TagHandler {
+
+	// Constants ------------------------------------------------------------------------------------------------------
+
+	/** The name of the attribute holding the field when the export value can be obtained via its getters. */
+	public static final String ATTRIBUTE_NAME = "exportField";
+
+	/** The name of the variable holding the field when the export value can be obtained via its getters. */
+	public static final String VARIABLE_NAME = "$exportField";
+
+
+	// Constructors ---------------------------------------------------------------------------------------------------
+
+	/**
+	 * The tag constructor.
+	 * @param config The tag config.
+	 */
+	public ExportField(TagConfig config) {
+		super(config);
+	}
+
+
+	// Actions --------------------------------------------------------------------------------------------------------
+
+	@Override
+	public void apply(FaceletContext context, UIComponent parent) {
+		VariableMapper variableMapper = context.getVariableMapper();
+		String exportField = null;
+
+		if (!isSpecified(variableMapper, "value") && !isSpecified(variableMapper, "exportValue")) {
+			ValueExpression field = variableMapper.resolveVariable("field");
+			Object fieldValue = (field != null) ? field.getValue(context) : null;
+
+			if (fieldValue != null) {
+				exportField = fieldValue.toString();
+			}
+		}
+
+		variableMapper.setVariable(VARIABLE_NAME, (exportField == null) ? null : context.getExpressionFactory().createValueExpression(exportField, String.class));
+	}
+
+	/**
+	 * Returns whether the attribute of given name is specified on the tag. This only works as long as it's not yet
+	 * defaulted by <code>&lt;o:tagAttribute&gt;</code>. The {@link VariableMapper#resolveVariable(String)} can't be used
+	 * for this, because it falls back to the variables of the parent tag, such as the <code>value</code> of the
+	 * <code>&lt;op:dataTable&gt;</code>. The {@link VariableMapper#setVariable(String, ValueExpression)} returns only the
+	 * variable of the tag itself, so it's temporarily cleared and then immediately restored.
+	 */
+	static boolean isSpecified(VariableMapper variableMapper, String name) {
+		ValueExpression specified = variableMapper.setVariable(name, null);
+		variableMapper.setVariable(name, specified);
+		return specified != null;
+	}
+
+}
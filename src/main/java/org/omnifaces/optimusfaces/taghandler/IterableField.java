@@ -0,0 +1,163 @@
+/*
+ * Copyright OmniFaces
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.optimusfaces.taghandler;
+
+import static org.omnifaces.optimusfaces.taghandler.ExportField.isSpecified;
+
+import javax.el.ELContext;
+import javax.el.PropertyNotWritableException;
+import javax.el.ValueExpression;
+import javax.el.VariableMapper;
+import javax.faces.component.UIComponent;
+import javax.faces.view.facelets.FaceletContext;
+import javax.faces.view.facelets.TagConfig;
+import javax.faces.view.facelets.TagHandler;
+
+import org.omnifaces.optimusfaces.model.PagedDataModel;
+
+/**
+ * <p>
+ * This is only used internally by <code>&lt;op:column&gt;</code>. It sets the variable {@value #VARIABLE_NAME} to
+ * whether the <code>field</code> of the column represents a collection as per
+ * {@link PagedDataModel#isCollectionField(String)}, so that the cells don't need to check it on every row. This is only
+ * decided when neither <code>value</code> nor <code>iterable</code> is specified on the tag. The <code>iterable</code>
+ * variable is then set to the same literal. When it can't be decided, then the variable {@value #VARIABLE_NAME} is set
+ * to <code>null</code> and the <code>iterable</code> variable is set to a check whether the value of the cell is an
+ * instance of {@link Iterable}, unless <code>iterable</code> is specified on the tag.
+ * <p>
+ * This must be placed in the tag file before the <code>&lt;o:tagAttribute&gt;</code> of <code>value</code> and
+ * <code>iterable</code>, because the variable mapper then still only holds the attributes specified on the tag.
+ *
+ * @author Bauke Scholtz
+ */
+public class IterableField extends TagHandler {
+
+	// Constants ------------------------------------------------------------------------------------------------------
+
+	/** The name of the variable holding whether the field represents a collection. */
+	public static final String VARIABLE_NAME = "$iterable";
+
+
+	// Constructors ---------------------------------------------------------------------------------------------------
+
+	/**
+	 * The tag constructor.
+	 * @param config The tag config.
+	 */
+	public IterableField(TagConfig config) {
+		super(config);
+	}
+
+
+	// Actions --------------------------------------------------------------------------------------------------------
+
+	@Override
+	public void apply(FaceletContext context, UIComponent parent) {
+		VariableMapper variableMapper = context.getVariableMapper();
+		variableMapper.setVariable(VARIABLE_NAME, null);
+
+		if (isSpecified(variableMapper, "iterable")) {
+			return;
+		}
+
+		ValueExpression value = isSpecified(variableMapper, "value") ? variableMapper.resolveVariable("value") : null;
+		Boolean iterable = null;
+
+		if (value == null) {
+			Object model = getValue(context, variableMapper, "$pagedDataModel");
+			Object field = getValue(context, variableMapper, "field");
+
+			if (model instanceof PagedDataModel && field != null) {
+				iterable = ((PagedDataModel<?>) model).isCollectionField(field.toString());
+			}
+		}
+
+		if (iterable != null) {
+			ValueExpression literal = context.getExpressionFactory().createValueExpression(iterable, Boolean.class);
+			variableMapper.setVariable(VARIABLE_NAME, literal);
+			variableMapper.setVariable("iterable", literal);
+		}
+		else {
+			ValueExpression cell = (value != null) ? value : context.getExpressionFactory().createValueExpression(context, "#{item[field]}", Object.class);
+			variableMapper.setVariable("iterable", new InstanceOfIterableValueExpression(cell));
+		}
+	}
+
+	private static Object getValue(FaceletContext context, VariableMapper variableMapper, String name) {
+		ValueExpression valueExpression = variableMapper.resolveVariable(name);
+		return (valueExpression != null) ? valueExpression.getValue(context) : null;
+	}
+
+
+	// Nested classes -------------------------------------------------------------------------------------------------
+
+	/**
+	 * Evaluates to whether the value of the wrapped value expression is an instance of {@link Iterable}.
+	 */
+	private static final class InstanceOfIterableValueExpression extends ValueExpression {
+
+		private static final long serialVersionUID = 1L;
+
+		private final ValueExpression wrapped;
+
+		public InstanceOfIterableValueExpression(ValueExpression wrapped) {
+			this.wrapped = wrapped;
+		}
+
+		@Override
+		public Object getValue(ELContext context) {
+			return wrapped.getValue(context) instanceof Iterable;
+		}
+
+		@Override
+		public void setValue(ELContext context, Object value) {
+			throw new PropertyNotWritableException(getExpressionString());
+		}
+
+		@Override
+		public boolean isReadOnly(ELContext context) {
+			return true;
+		}
+
+		@Override
+		public Class<?> getType(ELContext context) {
+			return Boolean.class;
+		}
+
+		@Override
+		public Class<?> getExpectedType() {
+			return Boolean.class;
+		}
+
+		@Override
+		public String getExpressionString() {
+			return wrapped.getExpressionString();
+		}
+
+		@Override
+		public boolean isLiteralText() {
+			return false;
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			return object instanceof InstanceOfIterableValueExpression && wrapped.equals(((InstanceOfIterableValueExpression) object).wrapped);
+		}
+
+		@Override
+		public int hashCode() {
+			return wrapped.hashCode();
+		}
+	}
+
+}
@@ -15,13 +15,16 @@ package org.omnifaces.optimusfaces.test;
 import static java.lang.Boolean.parseBoolean;
 import static java.lang.Math.min;
 import static java.lang.System.getProperty;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Arrays.asList;
 import static java.util.Arrays.stream;
 import static java.util.Comparator.naturalOrder;
 import static java.util.Comparator.reverseOrder;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static java.util.logging.Level.OFF;
 import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
 import static org.jboss.arquillian.graphene.Graphene.guardAjax;
 import static org.jboss.arquillian.graphene.Graphene.waitGui;
 import static org.jboss.shrinkwrap.api.ShrinkWrap.create;
@@ -33,19 +36,26 @@ import static org.omnifaces.optimusfaces.model.PagedDataModel.QUERY_PARAMETER_SE
 import static org.omnifaces.optimusfaces.model.PagedDataModel.QUERY_PARAMETER_SELECTION;
 import static org.omnifaces.optimusfaces.test.service.StartupService.ROWS_PER_PAGE;
 import static org.omnifaces.optimusfaces.test.service.StartupService.TOTAL_RECORDS;
+import static org.omnifaces.optimusfaces.test.view.OptimusFacesITNonLazyWithDatasetBean.DATASET_RECORDS;
+import static org.omnifaces.optimusfaces.test.view.OptimusFacesITNonLazyWithDatasetBean.REMOVED_RECORDS;
 import static org.omnifaces.persistence.Database.POSTGRESQL;
 import static org.openqa.selenium.Keys.BACK_SPACE;
 import static org.openqa.selenium.Keys.SPACE;
 import static org.openqa.selenium.Keys.TAB;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URL;
+import java.net.URLConnection;
 import java.text.Collator;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Scanner;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.logging.Logger;
@@ -67,6 +77,7 @@ import org.junit.jupiter.api.extension.BeforeEachCallback;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.extension.ExtensionContext;
 import org.omnifaces.optimusfaces.test.model.Gender;
+import org.omnifaces.optimusfaces.test.service.StatementCounter;
 import org.omnifaces.persistence.Database;
 import org.omnifaces.persistence.criteria.Between;
 import org.omnifaces.persistence.criteria.Criteria;
@@ -85,6 +96,15 @@ public abstract class OptimusFacesIT {
 
 	private static final int TIMEOUT_IN_SECONDS = 5;
 
+	/** Page query and count query, possibly twice when PrimeFaces also loads during decode. Anything above smells N+1. */
+	private static final int LAZY_STATEMENT_BUDGET = 4;
+
+	/** Like lazy, plus the queries loading the to-many relationships of the page when those can't be fetch joined. */
+	private static final int LAZY_TO_MANY_STATEMENT_BUDGET = 6;
+
+	/** The list is loaded once per view, except in a stateless view. Anything above smells N+1. */
+	private static final int NON_LAZY_STATEMENT_BUDGET = 2;
+
 	private static Database database;
 
 	@Drone
@@ -93,6 +113,8 @@ public abstract class OptimusFacesIT {
 	@ArquillianResource
 	private URL baseURL;
 
+	private int statementBudget;
+
 	protected static <T extends OptimusFacesIT> WebArchive createArchive(Class<T> testClass, Database database) {
 		OptimusFacesIT.database = database;
 		String packageName = testClass.getPackage().getName();
@@ -104,6 +126,8 @@ public abstract class OptimusFacesIT {
 			.addPackage(packageName + ".service")
 			.addPackage(packageName + ".view")
 			.addAsWebInfResource(EmptyAsset.INSTANCE, "beans.xml")
+			.addAsWebInfResource("WEB-INF/faces-config.xml", "faces-config.xml")
+			.addAsWebInfResource("WEB-INF/web.xml", "web.xml")
 			.addAsLibrary(new File(getProperty("optimusfaces.jar")))
 			.addAsLibraries(maven.loadPomFromFile("pom.xml").importCompileAndRuntimeDependencies().resolve().withTransitivity().asFile())
 			.addAsLibraries(maven.resolve("org.omnifaces:omnifaces:" + getProperty("test.omnifaces.version"), "org.primefaces:primefaces:" + getProperty("test.primefaces.version")).withTransitivity().asFile());
@@ -221,6 +245,11 @@ public abstract class OptimusFacesIT {
 		browser.manage().deleteAllCookies(); // Else IT on pagination/sorting may fail because they're apparently cached somewhere in session. TODO: investigate
 		browser.get(url);
 		waitGui(browser).until(primeFacesWidgetsInitialized());
+
+		statementBudget = !type.startsWith("Lazy") ? NON_LAZY_STATEMENT_BUDGET
+			: type.matches("LazyWith(OneToMany|ElementCollection).*") ? LAZY_TO_MANY_STATEMENT_BUDGET
+			: LAZY_STATEMENT_BUDGET;
+		assertStatementBudget();
 	}
 
 	protected static Function<WebDriver, Boolean> primeFacesWidgetsInitialized() {
@@ -245,6 +274,20 @@ public abstract class OptimusFacesIT {
 		return Integer.parseInt(rowCount.getText());
 	}
 
+	protected long getStatementCount() {
+		try {
+			URLConnection connection = new URL(baseURL + StatementCounter.STATEMENT_COUNT_PATH).openConnection();
+			connection.setRequestProperty("Cookie", browser.manage().getCookies().stream().map(cookie -> cookie.getName() + "=" + cookie.getValue()).collect(joining("; "))); // Count is remembered per session.
+
+			try (Scanner scanner = new Scanner(connection.getInputStream(), UTF_8.name())) {
+				return scanner.nextLong();
+			}
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
 	protected static boolean isWildFly() {
 		return getProperty("profile.id").startsWith("wildfly-");
 	}
@@ -316,6 +359,30 @@ public abstract class OptimusFacesIT {
 	@FindBy(id="form:table:phones_number")
 	private WebElement phones_numberColumn;
 
+	@FindBy(id="form:table:amount")
+	private WebElement amountColumn;
+
+	@FindBy(id="form:table:measured")
+	private WebElement measuredColumn;
+
+	@FindBy(id="form:table:score")
+	private WebElement scoreColumn;
+
+	@FindBy(id="form:table:tags")
+	private WebElement tagsColumn;
+
+	@FindBy(id="form:table:name:filter")
+	private WebElement nameColumnFilter;
+
+	@FindBy(id="form:table:amount:filter")
+	private WebElement amountColumnFilter;
+
+	@FindBy(id="form:table:measured:filter")
+	private WebElement measuredColumnFilter;
+
+	@FindBy(id="form:table:phones")
+	private WebElement phonesColumn;
+
 	@FindBy(id="form:table:groups")
 	private WebElement groupsColumn;
 
@@ -361,6 +428,15 @@ public abstract class OptimusFacesIT {
 	@FindBy(css="#form\\:table_data tr:nth-child(5) td:first-child")
 	private WebElement fifthRow;
 
+	@FindBy(css="#form\\:table_data tr:first-child td:first-child")
+	private WebElement firstRow;
+
+	@FindBy(css="#form\\:table_data tr:last-child td:first-child")
+	private WebElement lastRow;
+
+	@FindBy(css="#form\\:table_data tr:last-child td:nth-child(2)")
+	private WebElement lastRowEmail;
+
 	@FindBy(css="#form\\:table_data tr.ui-state-highlight")
 	private WebElement selectedRow;
 
@@ -418,9 +494,60 @@ public abstract class OptimusFacesIT {
 	@FindBy(id="form:groups:3")
 	private WebElement criteriaGroupDEVELOPER;
 
+	@FindBy(id="form:add")
+	private WebElement add;
+
+	@FindBy(id="form:update")
+	private WebElement update;
+
+	@FindBy(id="form:remove")
+	private WebElement remove;
+
+	@FindBy(id="form:removeMost")
+	private WebElement removeMost;
+
+	@FindBy(id="form:startConcurrentUpdates")
+	private WebElement startConcurrentUpdates;
+
+	@FindBy(id="form:stopConcurrentUpdates")
+	private WebElement stopConcurrentUpdates;
+
+	@FindBy(id="form:table:table_export_button")
+	private WebElement exportButton;
+
+	@FindBy(id="form:roundTrip")
+	private WebElement roundTripButton;
+
+	@FindBy(id="sameInstance")
+	private WebElement sameInstance;
+
+	@FindBy(id="builtBranches")
+	private WebElement builtBranches;
+
+	@FindBy(id="exportFields")
+	private WebElement exportFields;
+
+	@FindBy(id="form:table:table_exportDownload")
+	private WebElement exportDownloadLink;
+
+	@FindBy(id="form:resume")
+	private WebElement resumeButton;
+
 	@FindBy(id="rowCount")
 	private WebElement rowCount;
 
+	@FindBy(id="loadCounts")
+	private WebElement loadCounts;
+
+	@FindBy(id="requestThreadExecutor")
+	private WebElement requestThreadExecutor;
+
+	@FindBy(id="unmanagedThreadExecutor")
+	private WebElement unmanagedThreadExecutor;
+
+	@FindBy(id="concurrentUpdateCount")
+	private WebElement concurrentUpdateCount;
+
 	@FindBy(id="selection")
 	private WebElement selection;
 
@@ -451,6 +578,18 @@ public abstract class OptimusFacesIT {
 		testPaging();
 	}
 
+	@Test
+	public void testLazyAsyncWithPrefetch() {
+		open("LazyAsyncWithPrefetch");
+		testPrefetch();
+	}
+
+	@Test
+	public void testLazyWithCallerThreadExecutor() {
+		open("LazyWithCallerThreadExecutor");
+		testCallerThreadExecutor();
+	}
+
 	@Test
 	public void testLazySorting() {
 		open("Lazy");
@@ -569,6 +708,12 @@ public abstract class OptimusFacesIT {
 		testOneToOne();
 	}
 
+	@Test
+	public void testLazyWithOneToOneFetchPlan() {
+		open("LazyWithOneToOneFetchPlan");
+		testOneToOne();
+	}
+
 	@Test
 	public void testNonLazyWithOneToOne() {
 		open("NonLazyWithOneToOne");
@@ -581,6 +726,18 @@ public abstract class OptimusFacesIT {
 		testOneToMany();
 	}
 
+	@Test
+	public void testLazyWithOneToManyIterableColumns() {
+		open("LazyWithOneToManyIterableColumns");
+		testIterableColumns();
+	}
+
+	@Test
+	public void testLazyWithOneToManyFetchPlan() {
+		open("LazyWithOneToManyFetchPlan");
+		testOneToManyFetchPlan();
+	}
+
 	@Test
 	public void testNonLazyWithOneToMany() {
 		open("NonLazyWithOneToMany");
@@ -599,12 +756,72 @@ public abstract class OptimusFacesIT {
 		testElementCollection();
 	}
 
+	@Test
+	public void testLazyWithStreamExport() {
+		open("LazyWithStreamExport");
+		testStreamExport();
+	}
+
+	@Test
+	public void testLazyWithStreamExportValues() {
+		open("LazyWithStreamExport");
+		testStreamExportValues();
+	}
+
+	@Test
+	public void testLazyWithBackgroundExport() {
+		open("LazyWithBackgroundExport");
+		testBackgroundExport();
+	}
+
+	@Test
+	public void testNonLazyWithStreamSource() {
+		open("NonLazyWithStreamSource");
+		testStreamSource();
+	}
+
+	@Test
+	public void testNonLazyWithDataset() {
+		open("NonLazyWithDataset");
+		testDataset();
+	}
+
+	@Test
+	public void testNonLazyWithSharedDataset() {
+		open("NonLazyWithSharedDataset");
+		testSharedDataset();
+	}
+
+	@Test
+	public void testNonLazyWithMappedDataset() {
+		open("NonLazyWithMappedDataset");
+		testMappedDataset();
+	}
+
+	@Test
+	public void testNonLazyWithDatasetTypes() {
+		open("NonLazyWithDatasetTypes");
+		testDatasetTypes();
+	}
+
+	@Test
+	public void testNonLazyWithColumnarDatasetTypes() {
+		open("NonLazyWithDatasetTypes", "columnar=true");
+		testDatasetTypes();
+	}
+
 	@Test
 	public void testLazyWithManyToOne() {
 		open("LazyWithManyToOne");
 		testManyToOne();
 	}
 
+	@Test
+	public void testLazyWithManyToOneFetchPlan() {
+		open("LazyWithManyToOneFetchPlan");
+		testManyToOne();
+	}
+
 	@Test
 	public void testNonLazyWithManyToOne() {
 		open("NonLazyWithManyToOne");
@@ -1103,6 +1320,30 @@ public abstract class OptimusFacesIT {
 		}
 	}
 
+	protected void testOneToManyFetchPlan() {
+		assertNoCartesianProduct(); // Table has two to-many columns, of which only the first may be fetch joined.
+		assertPaginatorState(1, TOTAL_RECORDS, true);
+
+		guardAjax(pageNext).click();
+		assertPaginatorState(2, TOTAL_RECORDS, true);
+
+		guardAjax(pageLast).click();
+		assertPaginatorState(TOTAL_RECORDS / ROWS_PER_PAGE, TOTAL_RECORDS, true);
+
+		guardAjax(pageFirst).click();
+		assertPaginatorState(1, TOTAL_RECORDS, true);
+
+		guardAjax(phones_numberColumnFilter).sendKeys("11");
+		assertFilteredState(phones_numberColumnFilter, "11");
+		int rowCount = getRowCount();
+		assertTrue(rowCount < TOTAL_RECORDS, rowCount + " must be less than " + TOTAL_RECORDS);
+		assertPaginatorState(1, rowCount, true);
+
+		clearColumnFilter(phones_numberColumnFilter);
+		assertPaginatorState(1, TOTAL_RECORDS, true);
+		assertNoCartesianProduct();
+	}
+
 	protected void testElementCollection() {
 		assertNoCartesianProduct();
 		assertPaginatorState(1, TOTAL_RECORDS, true);
@@ -1205,6 +1446,352 @@ public abstract class OptimusFacesIT {
 		assertNoCartesianProduct();
 	}
 
+	protected void testSharedDataset() {
+		assertPaginatorState(1, TOTAL_RECORDS);
+
+		guardAjax(roundTripButton).click();
+		assertEquals("true,true", sameInstance.getText(), "Deserialized in request thread and in background thread is same instance");
+		assertPaginatorState(1, TOTAL_RECORDS);
+
+		guardAjax(pageNext).click();
+		assertPaginatorState(2, TOTAL_RECORDS);
+	}
+
+	/**
+	 * The mapped dataset is written and opened during startup, see MappedDatasetService. The ID and enum columns are
+	 * sorted and filtered straight from the mapped columns, the string column via collation ranks and the matcher.
+	 */
+	protected void testMappedDataset() {
+		assertPaginatorState(1, TOTAL_RECORDS);
+		assertSortedState(idColumn, false);
+		assertEquals(String.valueOf(TOTAL_RECORDS), firstRow.getText(), "first row");
+
+		guardAjax(pageNext).click();
+		assertPaginatorState(2, TOTAL_RECORDS);
+		assertEquals(String.valueOf(TOTAL_RECORDS - ROWS_PER_PAGE), firstRow.getText(), "first row");
+
+		guardAjax(genderColumn).click();
+		assertPaginatorState(1, TOTAL_RECORDS);
+		assertSortedState(genderColumn, true);
+		assertEquals("200", firstRow.getText(), "first row"); // MALE, then ID descending.
+		assertTrue(getCells(genderColumn).stream().allMatch(cell -> cell.getText().equals("MALE")), "all MALE");
+
+		guardAjax(genderColumn).click();
+		assertSortedState(genderColumn, false);
+		assertEquals("199", firstRow.getText(), "first row"); // OTHER, then ID descending.
+
+		guardAjax(emailColumn).click();
+		assertSortedState(emailColumn, true); // By collation ranks of the mapped strings.
+
+		guardAjax(emailColumnFilter).sendKeys("name12");
+		assertPaginatorState(1, 11); // name12 and name120 until name129.
+		assertFilteredState(emailColumnFilter, "name12");
+		clearColumnFilter(emailColumnFilter);
+
+		guardAjax(genderColumnFilter).sendKeys("FEMALE");
+		assertPaginatorState(1, TOTAL_RECORDS / Gender.values().length);
+		assertFilteredState(genderColumnFilter, "FEMALE");
+
+		guardAjax(roundTripButton).click();
+		assertEquals("true,true", sameInstance.getText(), "Deserialized in request thread and in background thread is same instance");
+		assertPaginatorState(1, TOTAL_RECORDS / Gender.values().length);
+	}
+
+	/**
+	 * BigDecimal and LocalDateTime can't be sorted on primitive keys nor extracted into a column, so they fall back to
+	 * Comparable and to the string representation. Ties are ordered by ID descending as per default ordering. Nulls
+	 * are ordered last when ascending and first when descending.
+	 */
+	protected void testDatasetTypes() {
+		assertIdOrder(6, 5, 4, 3, 2, 1);
+
+		guardAjax(amountColumn).click();
+		assertIdOrder(6, 3, 4, 1, 5, 2); // 2.50 and 2.5 are equal, as are 10.5 and 10.50.
+		guardAjax(amountColumn).click();
+		assertIdOrder(2, 5, 4, 1, 6, 3);
+
+		guardAjax(measuredColumn).click();
+		assertIdOrder(5, 6, 2, 4, 1, 3);
+		guardAjax(measuredColumn).click();
+		assertIdOrder(3, 4, 1, 6, 2, 5);
+
+		guardAjax(scoreColumn).click();
+		assertIdOrder(4, 6, 3, 1, 5, 2);
+		guardAjax(scoreColumn).click();
+		assertIdOrder(5, 2, 3, 1, 6, 4);
+
+		guardAjax(tagsColumn).click();
+		assertIdOrder(5, 4, 2, 3, 1, 6); // Elements are compared in the direction of the ordering, [a] of 4 and 5 are equal.
+		guardAjax(tagsColumn).click();
+		assertIdOrder(6, 2, 1, 3, 5, 4);
+
+		guardAjax(idColumn).click();
+		assertIdOrder(1, 2, 3, 4, 5, 6);
+		guardAjax(idColumn).click();
+		assertIdOrder(6, 5, 4, 3, 2, 1);
+
+		guardAjax(nameColumnFilter).sendKeys("IS");
+		assertIdOrder(1); // Turkish lowercases IS to ıs, which matches ISPARTA but not istanbul.
+		clearColumnFilter(nameColumnFilter);
+
+		guardAjax(amountColumnFilter).sendKeys("10.5");
+		assertIdOrder(4, 1);
+		clearColumnFilter(amountColumnFilter);
+
+		guardAjax(measuredColumnFilter).sendKeys("T09");
+		assertIdOrder(6, 2);
+		clearColumnFilter(measuredColumnFilter);
+
+		assertIdOrder(6, 5, 4, 3, 2, 1);
+	}
+
+	protected void testIterableColumns() {
+		assertEquals("email=scalar;phones_number=iterable;phones=scalar,iterable", builtBranches.getText(), "Built branches"); // Custom value can only be decided per cell.
+
+		for (WebElement column : asList(phones_numberColumn, phonesColumn)) {
+			getCells(column).forEach(cell -> assertTrue(!cell.findElements(By.cssSelector("span > span")).isEmpty(), "Iterable cell " + cell.getText()));
+		}
+
+		getCells(emailColumn).forEach(cell -> assertTrue(cell.findElements(By.cssSelector("span > span")).isEmpty(), "Scalar cell " + cell.getText()));
+	}
+
+	protected void testStreamExport() {
+		guardAjax(genderColumn).click();
+		assertSortedState(genderColumn, true);
+
+		List<List<String>> csv = downloadCsv(exportButton);
+		assertEquals(asList("id", "email", "gender", "upperCaseEmail"), csv.get(0), "CSV header");
+
+		List<List<String>> rows = csv.subList(1, csv.size());
+		assertEquals(TOTAL_RECORDS, rows.size(), "CSV row count"); // Export chunk size is 30, see web.xml, so this crosses chunk boundaries.
+		assertEquals(TOTAL_RECORDS, rows.stream().map(row -> row.get(0)).distinct().count(), "CSV unique IDs");
+
+		List<List<String>> expectedRows = new ArrayList<>(rows);
+		expectedRows.sort(Comparator.<List<String>, Gender>comparing(row -> Gender.valueOf(row.get(2))).thenComparing(row -> Long.valueOf(row.get(0)), reverseOrder()));
+		assertEquals(expectedRows, rows, "CSV ordering"); // Gender ascending, then default ordering of ID descending.
+	}
+
+	protected void testStreamSource() {
+		assertPaginatorState(1, TOTAL_RECORDS);
+		assertEquals("200", getCells(idColumn).get(0).getText(), "first ID of page 1");
+
+		guardAjax(pageNext).click();
+		assertPaginatorState(2, TOTAL_RECORDS);
+		assertEquals("190", getCells(idColumn).get(0).getText(), "first ID of page 2");
+
+		testStreamExport(); // Each chunk is another pass over the stream.
+	}
+
+	protected void testStreamExportValues() {
+		assertEquals("id=id;email=email;gender=gender;upperCaseEmail=null", exportFields.getText(), "Export fields"); // Only columns without value are exported via getters.
+
+		List<List<String>> rows = downloadCsv(exportButton).stream().skip(1).collect(toList());
+		assertEquals(TOTAL_RECORDS, rows.size(), "CSV row count");
+
+		for (List<String> row : rows) {
+			assertTrue(row.get(1).matches("name[0-9]+@example\\.com"), "Plain field value of " + row);
+			assertEquals(row.get(1).toUpperCase(), row.get(3), "EL value of " + row);
+			Gender.valueOf(row.get(2));
+		}
+	}
+
+	protected void testBackgroundExport() {
+		guardAjax(exportButton).click();
+		assertExportJobState("progress", "Exporting\u2026 15%"); // Job is paused after the first chunk of 30 rows, see web.xml.
+
+		guardAjax(resumeButton).click();
+		assertExportJobState("download", "Download");
+
+		List<List<String>> csv = downloadCsv(exportDownloadLink);
+		assertEquals(asList("id", "email", "gender"), csv.get(0), "CSV header");
+		assertEquals(TOTAL_RECORDS, csv.size() - 1, "CSV row count");
+		assertEquals(TOTAL_RECORDS, csv.stream().skip(1).map(row -> row.get(0)).distinct().count(), "CSV unique IDs");
+
+		open("LazyWithBackgroundExport");
+		guardAjax(exportButton).click();
+		assertExportJobState("progress", "Exporting\u2026 15%");
+
+		guardAjax(exportButton).click();
+		assertExportJobState("rejected", "Too many exports in progress, please try again later");
+
+		guardAjax(resumeButton).click(); // Let the running job finish.
+	}
+
+	protected void testPrefetch() {
+		assertPaginatorState(1, TOTAL_RECORDS);
+		assertLoadCount("10 id desc", 1); // Prefetched.
+
+		guardAjax(pageNext).click();
+		assertPaginatorState(2, TOTAL_RECORDS);
+		assertLoadCount("10 id desc", 1); // Taken from prefetch.
+		assertLoadCount("20 id desc", 1);
+
+		guardAjax(pageNext).click();
+		assertPaginatorState(3, TOTAL_RECORDS);
+		assertLoadCount("20 id desc", 1);
+
+		// Prefetch of previous sort must not be used.
+		guardAjax(emailColumn).click();
+		assertPaginatorState(1, TOTAL_RECORDS);
+		assertSortedState(emailColumn, true);
+
+		guardAjax(pageNext).click();
+		assertPaginatorState(2, TOTAL_RECORDS);
+		assertSortedState(emailColumn, true);
+		assertLoadCount("10 email asc, id desc", 1);
+
+		// Prefetch of previous filter must not be used.
+		guardAjax(emailColumnFilter).sendKeys("1");
+		assertFilteredState(emailColumnFilter, "1");
+		int rowCount = getRowCount();
+		assertTrue(rowCount > ROWS_PER_PAGE, rowCount + " must be more than " + ROWS_PER_PAGE);
+		assertPaginatorState(1, rowCount);
+		assertSortedState(emailColumn, true);
+
+		guardAjax(pageNext).click();
+		assertPaginatorState(2, rowCount);
+		assertFilteredState(emailColumnFilter, "1");
+		assertSortedState(emailColumn, true);
+		assertLoadCount("10 email asc, id desc where email", 1);
+
+		clearColumnFilter(emailColumnFilter);
+		assertPaginatorState(1, TOTAL_RECORDS);
+		assertSortedState(emailColumn, true);
+	}
+
+	protected void testCallerThreadExecutor() {
+		assertEquals("background", requestThreadExecutor.getText(), "executor on request thread");
+		assertEquals("caller thread", unmanagedThreadExecutor.getText(), "executor on unmanaged thread");
+
+		// Nothing is prefetched when the executor would run it on the request thread anyway.
+		assertPaginatorState(1, TOTAL_RECORDS);
+		assertLoadCount("10 id desc", null);
+
+		guardAjax(pageNext).click();
+		assertPaginatorState(2, TOTAL_RECORDS);
+		assertLoadCount("10 id desc", 1);
+		assertLoadCount("20 id desc", null);
+	}
+
+	protected void testDataset() {
+		int records = DATASET_RECORDS;
+		assertPaginatorState(1, records);
+		assertSortedState(idColumn, false);
+		assertEquals(String.valueOf(records), firstRow.getText(), "first row");
+
+		// Added row is inserted into the cached head.
+		guardAjax(add).click();
+		assertPaginatorState(1, ++records);
+		assertSortedState(idColumn, false);
+		assertEquals(String.valueOf(DATASET_RECORDS + 1), firstRow.getText(), "first row");
+
+		// Added row is beyond the cached head.
+		guardAjax(idColumn).click();
+		assertSortedState(idColumn, true);
+		guardAjax(add).click();
+		assertPaginatorState(1, ++records);
+		assertSortedState(idColumn, true);
+		assertEquals("1", firstRow.getText(), "first row");
+
+		guardAjax(pageLast).click();
+		int lastPage = (records + ROWS_PER_PAGE - 1) / ROWS_PER_PAGE;
+		assertPaginatorState(lastPage, records);
+		assertEquals(String.valueOf(DATASET_RECORDS + 2), lastRow.getText(), "last row");
+
+		guardAjax(update).click();
+		assertPaginatorState(lastPage, records);
+		assertSortedState(idColumn, true);
+		assertEquals(String.valueOf(DATASET_RECORDS + 2), lastRow.getText(), "last row");
+		assertEquals("updated" + (DATASET_RECORDS + 2) + "@example.com", lastRowEmail.getText(), "last row email");
+
+		// Removed row leaves a gap.
+		guardAjax(remove).click();
+		assertPaginatorState(lastPage, --records);
+		assertSortedState(idColumn, true);
+		assertEquals(String.valueOf(DATASET_RECORDS + 1), lastRow.getText(), "last row");
+
+		guardAjax(pageFirst).click();
+		assertPaginatorState(1, records);
+
+		// Email filter is answered by a trigram index, which must not be stale after mutations.
+		guardAjax(emailColumnFilter).sendKeys("name1000");
+		assertPaginatorState(1, 3);
+		assertFilteredState(emailColumnFilter, "name1000");
+
+		guardAjax(add).click();
+		assertPaginatorState(1, 4);
+		assertFilteredState(emailColumnFilter, "name1000");
+
+		guardAjax(update).click();
+		assertPaginatorState(1, 3);
+		assertFilteredState(emailColumnFilter, "name1000");
+
+		guardAjax(remove).click();
+		assertPaginatorState(1, 3);
+
+		guardAjax(update).click();
+		assertPaginatorState(1, 2);
+		assertFilteredState(emailColumnFilter, "name1000");
+		assertSortedState(idColumn, true);
+
+		clearColumnFilter(emailColumnFilter);
+		assertPaginatorState(1, records);
+
+		// Gender filter is answered by a bitmap index.
+		int femaleRecords = DATASET_RECORDS / Gender.values().length;
+		guardAjax(genderColumnFilter).sendKeys("FEMALE");
+		assertPaginatorState(1, femaleRecords);
+		assertFilteredState(genderColumnFilter, "FEMALE");
+
+		guardAjax(add).click();
+		assertPaginatorState(1, femaleRecords + 1);
+		assertFilteredState(genderColumnFilter, "FEMALE");
+
+		guardAjax(update).click();
+		assertPaginatorState(1, femaleRecords);
+		assertFilteredState(genderColumnFilter, "FEMALE");
+
+		guardAjax(remove).click();
+		assertPaginatorState(1, femaleRecords);
+
+		clearColumnFilter(genderColumnFilter);
+		assertPaginatorState(1, records);
+
+		// Removing more rows than there are left compacts the dataset.
+		guardAjax(removeMost).click();
+		records -= REMOVED_RECORDS;
+		assertPaginatorState(1, records);
+		assertSortedState(idColumn, true);
+		assertEquals(String.valueOf(REMOVED_RECORDS + 1), firstRow.getText(), "first row");
+
+		guardAjax(idColumn).click();
+		assertSortedState(idColumn, false);
+		guardAjax(add).click();
+		assertPaginatorState(1, ++records);
+		assertSortedState(idColumn, false);
+		assertEquals(String.valueOf(DATASET_RECORDS + 5), firstRow.getText(), "first row");
+
+		// Paging must not be blocked by concurrent updates.
+		guardAjax(startConcurrentUpdates).click();
+
+		guardAjax(pageNext).click();
+		assertPaginatorState(2, records);
+		assertSortedState(idColumn, false);
+
+		guardAjax(pageLast).click();
+		assertPaginatorState((records + ROWS_PER_PAGE - 1) / ROWS_PER_PAGE, records);
+		assertSortedState(idColumn, false);
+
+		guardAjax(idColumn).click();
+		assertPaginatorState(1, records);
+		assertSortedState(idColumn, true);
+
+		guardAjax(stopConcurrentUpdates).click();
+		assertTrue(Long.parseLong(concurrentUpdateCount.getText()) > 0, "concurrent updates must have run");
+		assertPaginatorState(1, records);
+		assertSortedState(idColumn, true);
+	}
+
 	protected void testGlobalFilter(boolean oneToManyOrElementCollection) {
 		guardAjax(idColumnFilter).sendKeys("2");
 		assertFilteredState(idColumnFilter, "2");
@@ -1267,6 +1854,45 @@ public abstract class OptimusFacesIT {
 		assertEquals(min(pageCount, 10), pages.size(), "page count");
 		assertEquals(String.valueOf(currentPage), pageCurrent.getText(), "page current");
 		assertEquals((currentPage == 1) ? null : String.valueOf(currentPage), getQueryParameter(QUERY_PARAMETER_PAGE), "page query string");
+		assertStatementBudget();
+	}
+
+	protected void assertStatementBudget() {
+		long statementCount = getStatementCount();
+
+		if (statementCount == StatementCounter.UNAVAILABLE) {
+			System.out.println("SKIPPING assertStatementBudget() because statement count is only available on Hibernate");
+		}
+		else {
+			assertTrue(statementCount <= statementBudget, "statement count " + statementCount + " exceeds budget " + statementBudget);
+		}
+	}
+
+	/**
+	 * Clicks given export button, waits for the CSV to arrive and returns its rows. The browser is then left on the CSV.
+	 */
+	protected List<List<String>> downloadCsv(WebElement exportButton) {
+		exportButton.click();
+		waitGui(browser).until(driver -> driver.getPageSource().startsWith("\""));
+		return stream(browser.getPageSource().split("\n")).map(line -> asList(line.substring(1, line.length() - 1).split("\",\"", -1))).collect(toList());
+	}
+
+	/**
+	 * Waits for the export job panel to show an element of given style class with given text. It's updated by a poll.
+	 */
+	protected void assertExportJobState(String styleClass, String text) {
+		By state = By.cssSelector("#form\\:table\\:table_exportJob ." + styleClass);
+		waitGui(browser).withTimeout(10, SECONDS).until(driver -> driver.findElements(state).stream().anyMatch(element -> element.getText().equals(text)));
+	}
+
+	protected void assertIdOrder(Integer... ids) {
+		assertEquals(stream(ids).map(String::valueOf).collect(toList()), getCells(idColumn).stream().map(WebElement::getText).collect(toList()), "ID order");
+		assertEquals(ids.length, getRowCount(), "row count");
+	}
+
+	protected void assertLoadCount(String page, Integer expectedLoadCount) {
+		Map<String, String> loadCounts = stream(this.loadCounts.getText().split(";")).map(loadCount -> loadCount.split("=")).collect(toMap(loadCount -> loadCount[0], loadCount -> loadCount[1]));
+		assertEquals((expectedLoadCount == null) ? null : String.valueOf(expectedLoadCount), loadCounts.get(page), "load count of " + page);
 	}
 
 	protected void assertSortedState(WebElement column, boolean ascending) {
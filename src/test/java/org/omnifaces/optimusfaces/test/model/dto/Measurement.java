@@ -0,0 +1,71 @@
+/*
+ * Copyright OmniFaces
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.optimusfaces.test.model.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.omnifaces.persistence.model.BaseEntity;
+
+public class Measurement extends BaseEntity<Long> {
+
+	private static final long serialVersionUID = 1L;
+
+	private Long id;
+	private String name;
+	private BigDecimal amount;
+	private LocalDateTime measured;
+	private Integer score;
+	private List<String> tags;
+
+	public Measurement(Long id, String name, BigDecimal amount, LocalDateTime measured, Integer score, List<String> tags) {
+		this.id = id;
+		this.name = name;
+		this.amount = amount;
+		this.measured = measured;
+		this.score = score;
+		this.tags = tags;
+	}
+
+	@Override
+	public Long getId() {
+		return id;
+	}
+
+	@Override
+	public void setId(Long id) {
+		this.id = id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public BigDecimal getAmount() {
+		return amount;
+	}
+
+	public LocalDateTime getMeasured() {
+		return measured;
+	}
+
+	public Integer getScore() {
+		return score;
+	}
+
+	public List<String> getTags() {
+		return tags;
+	}
+
+}
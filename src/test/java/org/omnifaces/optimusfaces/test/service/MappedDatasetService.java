@@ -0,0 +1,78 @@
+/*
+ * Copyright OmniFaces
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.optimusfaces.test.service;
+
+import static java.util.Arrays.asList;
+import static org.omnifaces.optimusfaces.test.service.StartupService.TOTAL_RECORDS;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.stream.LongStream;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+
+import org.omnifaces.cdi.Eager;
+import org.omnifaces.optimusfaces.model.MappedDataset;
+import org.omnifaces.optimusfaces.test.model.Gender;
+import org.omnifaces.optimusfaces.test.model.Person;
+
+@Eager
+@ApplicationScoped
+public class MappedDatasetService {
+
+	public static final String SHARED_DATASET_NAME = "mappedPersons";
+
+	private MappedDataset<Person> dataset;
+
+	@PostConstruct
+	public void init() {
+		try {
+			Path directory = Files.createTempDirectory("optimusfaces");
+			Path file = directory.resolve("persons.opmd");
+			directory.toFile().deleteOnExit();
+			file.toFile().deleteOnExit();
+
+			MappedDataset.write(file, Person.class, asList("id", "email", "gender", "dateOfBirth"), LongStream.rangeClosed(1, TOTAL_RECORDS).mapToObj(id -> {
+				Person person = new Person();
+				person.setId(id);
+				person.setEmail("name" + id + "@example.com");
+				person.setGender(Gender.values()[(int) (id % Gender.values().length)]);
+				person.setDateOfBirth(LocalDate.of(1900, 1, 1).plusDays(id));
+				return person;
+			}));
+
+			dataset = MappedDataset.open(file, Person.class, MappedDatasetService::toPerson).share(SHARED_DATASET_NAME); // There's no faces context during startup.
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static Person toPerson(Object[] values) {
+		Person person = new Person();
+		person.setId((Long) values[0]);
+		person.setEmail((String) values[1]);
+		person.setGender((Gender) values[2]);
+		person.setDateOfBirth((LocalDate) values[3]);
+		return person;
+	}
+
+	public MappedDataset<Person> getDataset() {
+		return dataset;
+	}
+
+}
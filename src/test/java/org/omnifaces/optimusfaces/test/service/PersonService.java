@@ -22,6 +22,7 @@ import javax.ejb.Stateless;
 import javax.persistence.criteria.Expression;
 import javax.persistence.criteria.Join;
 
+import org.omnifaces.optimusfaces.model.FetchPlan;
 import org.omnifaces.optimusfaces.test.model.Address;
 import org.omnifaces.optimusfaces.test.model.Person;
 import org.omnifaces.optimusfaces.test.model.Phone;
@@ -52,6 +53,12 @@ public class PersonService extends BaseEntityService<Long, Person> {
 		});
 	}
 
+	public PartialResultList<Person> getPageWithFetchPlan(Page page, boolean count, FetchPlan fetchPlan) {
+		return getPage(page, count, (builder, query, person) -> {
+			fetchPlan.fetch(query, person);
+		});
+	}
+
 	public PartialResultList<PersonCard> getPageOfPersonCards(Page page, boolean count) {
 		return getPage(page, count, PersonCard.class, (builder, query, person) -> {
 			Join<Person, Address> personAddress = person.join("address");
@@ -14,6 +14,7 @@ package org.omnifaces.optimusfaces.test.service;
 
 import javax.ejb.Stateless;
 
+import org.omnifaces.optimusfaces.model.FetchPlan;
 import org.omnifaces.optimusfaces.test.model.Phone;
 import org.omnifaces.persistence.model.dto.Page;
 import org.omnifaces.persistence.service.BaseEntityService;
@@ -28,6 +29,12 @@ public class PhoneService extends BaseEntityService<Long, Phone> {
 		});
 	}
 
+	public PartialResultList<Phone> getPageWithFetchPlan(Page page, boolean count, FetchPlan fetchPlan) {
+		return getPage(page, count, (builder, query, phone) -> {
+			fetchPlan.fetch(query, phone);
+		});
+	}
+
 	public PartialResultList<Phone> getAllWithOwners() {
 		return getPageWithOwners(Page.ALL, false);
 	}
@@ -0,0 +1,57 @@
+/*
+ * Copyright OmniFaces
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.optimusfaces.test.service;
+
+import static org.omnifaces.optimusfaces.test.service.StartupService.TOTAL_RECORDS;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+
+import org.omnifaces.cdi.Eager;
+import org.omnifaces.optimusfaces.model.Dataset;
+import org.omnifaces.optimusfaces.test.model.Gender;
+import org.omnifaces.optimusfaces.test.model.Person;
+
+@Eager
+@ApplicationScoped
+public class SharedDatasetService {
+
+	public static final String SHARED_DATASET_NAME = "persons";
+
+	private Dataset<Person> dataset;
+
+	@PostConstruct
+	public void init() {
+		List<Person> persons = new ArrayList<>();
+
+		for (long id = 1; id <= TOTAL_RECORDS; id++) {
+			Person person = new Person();
+			person.setId(id);
+			person.setEmail("name" + id + "@example.com");
+			person.setGender(Gender.values()[(int) (id % Gender.values().length)]);
+			person.setDateOfBirth(LocalDate.of(1900, 1, 1).plusDays(id));
+			persons.add(person);
+		}
+
+		dataset = Dataset.of(persons).share(SHARED_DATASET_NAME); // There's no faces context during startup.
+	}
+
+	public Dataset<Person> getDataset() {
+		return dataset;
+	}
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright OmniFaces
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.optimusfaces.test.service;
+
+import static java.util.logging.Level.FINE;
+import static javax.faces.event.PhaseId.RENDER_RESPONSE;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import javax.faces.application.ResourceHandler;
+import javax.faces.context.ExternalContext;
+import javax.faces.event.PhaseEvent;
+import javax.faces.event.PhaseId;
+import javax.faces.event.PhaseListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts the SQL statements executed per request. This is test-only and currently only supported on Hibernate, which
+ * passes every statement to the {@link Inspector} registered as <code>hibernate.session_factory.statement_inspector</code>
+ * in the <code>persistence.xml</code>. On other providers the count is always <code>-1</code> and the IT skips the
+ * statement budget assertions.
+ * <p>
+ * Only the statements executed by the thread of the request itself are counted, so concurrent requests, such as those
+ * of other ITs, and background threads, such as those prefetching the next page, don't pollute the count.
+ * <p>
+ * The count of every page request is recorded by the {@link RenderResponseListener} at the end of the render response
+ * phase, thus before the response is completed. It is then set as request attribute {@value #ATTRIBUTE_NAME}, remembered
+ * in the HTTP session and logged at level FINE. The count of the last rendered page request of the session can be
+ * obtained via <code>GET /statementCount</code> with the session cookie, which is used by the IT to assert the statement
+ * budget.
+ */
+@WebFilter("/*")
+public class StatementCounter extends HttpFilter {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final String ATTRIBUTE_NAME = "statementCount";
+	public static final String STATEMENT_COUNT_PATH = "/statementCount";
+	public static final long UNAVAILABLE = -1;
+
+	private static final String LAST_COUNT_ATTRIBUTE_NAME = StatementCounter.class.getName();
+	private static final Logger logger = Logger.getLogger(StatementCounter.class.getName());
+	private static final ThreadLocal<AtomicLong> currentCount = new ThreadLocal<>();
+	private static volatile boolean available;
+
+	@Override
+	protected void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws IOException, ServletException {
+		String path = request.getServletPath();
+
+		if (STATEMENT_COUNT_PATH.equals(path)) {
+			HttpSession session = request.getSession(false);
+			Object lastCount = (session == null) ? null : session.getAttribute(LAST_COUNT_ATTRIBUTE_NAME);
+			response.setContentType("text/plain");
+			response.getWriter().print((lastCount == null) ? UNAVAILABLE : lastCount);
+			return;
+		}
+
+		if (!path.endsWith(".xhtml") || request.getRequestURI().contains(ResourceHandler.RESOURCE_IDENTIFIER)) {
+			chain.doFilter(request, response);
+			return;
+		}
+
+		request.getSession().removeAttribute(LAST_COUNT_ATTRIBUTE_NAME); // Session is created here because the response may already be committed when the count is recorded.
+		currentCount.set(new AtomicLong());
+
+		try {
+			chain.doFilter(request, response);
+		}
+		finally {
+			currentCount.remove();
+		}
+	}
+
+	/**
+	 * Counts the statements of the current request. This is registered in the <code>persistence.xml</code> of the
+	 * Hibernate based test deployments.
+	 */
+	public static class Inspector implements StatementInspector {
+
+		private static final long serialVersionUID = 1L;
+
+		public Inspector() {
+			available = true;
+		}
+
+		@Override
+		public String inspect(String sql) {
+			AtomicLong count = currentCount.get();
+
+			if (count != null) {
+				count.incrementAndGet();
+			}
+
+			return sql;
+		}
+
+	}
+
+	/**
+	 * Records the statement count of the current request at the end of the render response phase. This is registered
+	 * in the <code>faces-config.xml</code> of the test deployment.
+	 */
+	public static class RenderResponseListener implements PhaseListener {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public PhaseId getPhaseId() {
+			return RENDER_RESPONSE;
+		}
+
+		@Override
+		public void beforePhase(PhaseEvent event) {
+			// NOOP.
+		}
+
+		@Override
+		public void afterPhase(PhaseEvent event) {
+			AtomicLong currentCount = StatementCounter.currentCount.get();
+
+			if (currentCount != null) {
+				ExternalContext externalContext = event.getFacesContext().getExternalContext();
+				Map<String, Object> requestMap = externalContext.getRequestMap();
+				long count = available ? currentCount.get() : UNAVAILABLE;
+				requestMap.put(ATTRIBUTE_NAME, count);
+				externalContext.getSessionMap().put(LAST_COUNT_ATTRIBUTE_NAME, count);
+				logger.log(FINE, "{0} statements executed for {1}", new Object[] { count, externalContext.getRequestServletPath() });
+			}
+		}
+
+	}
+
+}
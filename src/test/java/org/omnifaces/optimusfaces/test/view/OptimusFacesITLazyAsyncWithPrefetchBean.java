@@ -0,0 +1,71 @@
+/*
+ * Copyright OmniFaces
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.optimusfaces.test.view;
+
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+import static java.util.stream.Collectors.joining;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.omnifaces.cdi.ViewScoped;
+import org.omnifaces.optimusfaces.model.BackgroundExecutor;
+import org.omnifaces.optimusfaces.model.FetchPlan;
+import org.omnifaces.optimusfaces.model.PagedDataModel;
+import org.omnifaces.optimusfaces.test.model.Person;
+import org.omnifaces.optimusfaces.test.service.PersonService;
+import org.omnifaces.persistence.model.dto.Page;
+import org.omnifaces.utils.collection.PartialResultList;
+
+@Named
+@ViewScoped
+public class OptimusFacesITLazyAsyncWithPrefetchBean implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private PagedDataModel<Person> lazyPersons;
+	private Map<String, Integer> loadCounts = new ConcurrentSkipListMap<>();
+
+	@Inject
+	private PersonService personService;
+
+	@PostConstruct
+	public void init() {
+		lazyPersons = PagedDataModel.lazyAsync(this::getPageAsync).prefetch().build();
+	}
+
+	private CompletionStage<PartialResultList<Person>> getPageAsync(Page page, boolean count, FetchPlan fetchPlan) {
+		loadCounts.merge(toKey(page), 1, Integer::sum);
+		return supplyAsync(() -> personService.getPage(page, count), BackgroundExecutor.getDefault());
+	}
+
+	private static String toKey(Page page) {
+		return page.getOffset() + " " + page.getOrdering().entrySet().stream().map(order -> order.getKey() + (order.getValue() ? " asc" : " desc")).collect(joining(", "))
+			+ (page.getRequiredCriteria().isEmpty() ? "" : " where " + String.join(", ", page.getRequiredCriteria().keySet()));
+	}
+
+	public PagedDataModel<Person> getLazyPersons() {
+		return lazyPersons;
+	}
+
+	public String getLoadCounts() {
+		return loadCounts.entrySet().stream().map(Object::toString).collect(joining(";"));
+	}
+
+}
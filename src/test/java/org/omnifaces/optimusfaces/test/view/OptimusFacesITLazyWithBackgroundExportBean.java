@@ -0,0 +1,70 @@
+/*
+ * Copyright OmniFaces
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.optimusfaces.test.view;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+import java.io.Serializable;
+import java.util.concurrent.CountDownLatch;
+
+import javax.annotation.PostConstruct;
+import javax.faces.context.FacesContext;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.omnifaces.cdi.ViewScoped;
+import org.omnifaces.optimusfaces.model.PagedDataModel;
+import org.omnifaces.optimusfaces.test.model.Person;
+import org.omnifaces.optimusfaces.test.service.PersonService;
+import org.omnifaces.persistence.model.dto.Page;
+import org.omnifaces.utils.collection.PartialResultList;
+
+@Named
+@ViewScoped
+public class OptimusFacesITLazyWithBackgroundExportBean implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private PagedDataModel<Person> lazyPersons;
+	private transient CountDownLatch paused = new CountDownLatch(1);
+
+	@Inject
+	private PersonService personService;
+
+	@PostConstruct
+	public void init() {
+		lazyPersons = PagedDataModel.lazy(this::getPage).build();
+	}
+
+	private PartialResultList<Person> getPage(Page page, boolean count) {
+		if (FacesContext.getCurrentInstance() == null) { // Export job is paused after its first chunk, so its progress can be observed.
+			try {
+				paused.await(1, MINUTES);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		return personService.getPage(page, count);
+	}
+
+	public void resume() {
+		paused.countDown();
+	}
+
+	public PagedDataModel<Person> getLazyPersons() {
+		return lazyPersons;
+	}
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright OmniFaces
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.optimusfaces.test.view;
+
+import static java.util.stream.Collectors.joining;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.omnifaces.cdi.ViewScoped;
+import org.omnifaces.optimusfaces.model.BackgroundExecutor;
+import org.omnifaces.optimusfaces.model.PagedDataModel;
+import org.omnifaces.optimusfaces.test.model.Person;
+import org.omnifaces.optimusfaces.test.service.PersonService;
+import org.omnifaces.persistence.model.dto.Page;
+import org.omnifaces.utils.collection.PartialResultList;
+
+@Named
+@ViewScoped
+public class OptimusFacesITLazyWithCallerThreadExecutorBean implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private PagedDataModel<Person> lazyPersons;
+	private Map<String, Integer> loadCounts = new ConcurrentSkipListMap<>();
+	private String requestThreadExecutor;
+	private String unmanagedThreadExecutor;
+
+	@Inject
+	private PersonService personService;
+
+	@PostConstruct
+	public void init() throws InterruptedException {
+		requestThreadExecutor = describe(BackgroundExecutor.getDefault());
+
+		AtomicReference<Executor> executor = new AtomicReference<>();
+		Thread unmanagedThread = new Thread(() -> executor.set(BackgroundExecutor.getDefault())); // Has no java:comp, so no managed executor.
+		unmanagedThread.start();
+		unmanagedThread.join();
+		unmanagedThreadExecutor = describe(executor.get());
+
+		lazyPersons = PagedDataModel.lazy(this::getPage).prefetch().executor(executor.get()).build();
+	}
+
+	private PartialResultList<Person> getPage(Page page, boolean count) {
+		loadCounts.merge(toKey(page), 1, Integer::sum);
+		return personService.getPage(page, count);
+	}
+
+	private static String toKey(Page page) {
+		return page.getOffset() + " " + page.getOrdering().entrySet().stream().map(order -> order.getKey() + (order.getValue() ? " asc" : " desc")).collect(joining(", "));
+	}
+
+	private static String describe(Executor executor) {
+		return BackgroundExecutor.isCallerThread(executor) ? "caller thread" : "background";
+	}
+
+	public PagedDataModel<Person> getLazyPersons() {
+		return lazyPersons;
+	}
+
+	public String getLoadCounts() {
+		return loadCounts.entrySet().stream().map(Object::toString).collect(joining(";"));
+	}
+
+	public String getRequestThreadExecutor() {
+		return requestThreadExecutor;
+	}
+
+	public String getUnmanagedThreadExecutor() {
+		return unmanagedThreadExecutor;
+	}
+
+}
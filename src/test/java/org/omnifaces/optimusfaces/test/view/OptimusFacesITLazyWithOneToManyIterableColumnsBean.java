@@ -0,0 +1,73 @@
+/*
+ * Copyright OmniFaces
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.optimusfaces.test.view;
+
+import static java.util.stream.Collectors.joining;
+import static org.omnifaces.util.Components.findComponent;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+import javax.el.ValueExpression;
+import javax.faces.component.UIComponent;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.omnifaces.cdi.ViewScoped;
+import org.omnifaces.optimusfaces.model.PagedDataModel;
+import org.omnifaces.optimusfaces.test.model.Person;
+import org.omnifaces.optimusfaces.test.service.PersonService;
+import org.primefaces.component.datatable.DataTable;
+
+@Named
+@ViewScoped
+public class OptimusFacesITLazyWithOneToManyIterableColumnsBean implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private PagedDataModel<Person> lazyPersonsWithPhones;
+
+	@Inject
+	private PersonService personService;
+
+	@PostConstruct
+	public void init() {
+		lazyPersonsWithPhones = PagedDataModel.lazy(personService::getPageWithPhones).build();
+	}
+
+	public PagedDataModel<Person> getLazyPersonsWithPhones() {
+		return lazyPersonsWithPhones;
+	}
+
+	public String getBuiltBranches() {
+		DataTable table = findComponent("form:table");
+		return table.getColumns().stream().map(column -> ((UIComponent) column).getId() + "=" + String.join(",", getBuiltBranches((UIComponent) column, new ArrayList<>()))).collect(joining(";"));
+	}
+
+	private static List<String> getBuiltBranches(UIComponent component, List<String> branches) {
+		ValueExpression rendered = component.getValueExpression("rendered");
+
+		if (rendered != null && rendered.getExpressionString().equals("#{not iterable}")) {
+			branches.add("scalar");
+		}
+		else if (rendered != null && rendered.getExpressionString().equals("#{iterable}")) {
+			branches.add("iterable");
+		}
+
+		component.getChildren().forEach(child -> getBuiltBranches(child, branches));
+		return branches;
+	}
+
+}
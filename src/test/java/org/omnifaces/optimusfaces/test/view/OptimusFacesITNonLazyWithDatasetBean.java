@@ -0,0 +1,123 @@
+/*
+ * Copyright OmniFaces
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.optimusfaces.test.view;
+
+import static java.util.concurrent.CompletableFuture.runAsync;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Named;
+
+import org.omnifaces.cdi.ViewScoped;
+import org.omnifaces.optimusfaces.model.Dataset;
+import org.omnifaces.optimusfaces.model.PagedDataModel;
+import org.omnifaces.optimusfaces.test.model.Gender;
+import org.omnifaces.optimusfaces.test.model.Person;
+
+@Named
+@ViewScoped
+public class OptimusFacesITNonLazyWithDatasetBean implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/** Enough to get the email filter answered by a trigram index. */
+	public static final int DATASET_RECORDS = 10000;
+
+	/** Ids 1 until 7500 are removed, which are more than there are left, so that the dataset is compacted. */
+	public static final int REMOVED_RECORDS = 7500;
+
+	private Dataset<Person> dataset;
+	private PagedDataModel<Person> nonLazyPersonsWithDataset;
+	private long nextId = DATASET_RECORDS + 1;
+	private Deque<Long> addedIds = new ArrayDeque<>();
+
+	private transient volatile boolean updatingConcurrently;
+	private transient CompletableFuture<Void> concurrentUpdates;
+	private AtomicLong concurrentUpdateCount = new AtomicLong();
+
+	@PostConstruct
+	public void init() {
+		List<Person> persons = new ArrayList<>();
+
+		for (long id = 1; id <= DATASET_RECORDS; id++) {
+			Gender gender = Gender.values()[(int) (id % Gender.values().length)];
+			persons.add(createPerson(id, "name" + id + "@example.com", gender));
+		}
+
+		dataset = Dataset.of(persons, true);
+		nonLazyPersonsWithDataset = PagedDataModel.nonLazy(dataset).build();
+	}
+
+	public void add() {
+		long id = nextId++;
+		dataset.add(createPerson(id, "name" + id + "@example.com", Gender.FEMALE));
+		addedIds.push(id);
+	}
+
+	public void update() {
+		long id = addedIds.peek();
+		dataset.update(createPerson(id, "updated" + id + "@example.com", Gender.MALE));
+	}
+
+	public void remove() {
+		dataset.remove(createPerson(addedIds.pop(), null, null));
+	}
+
+	public void removeMost() {
+		for (long id = 1; id <= REMOVED_RECORDS; id++) {
+			dataset.remove(createPerson(id, null, null));
+		}
+	}
+
+	public void startConcurrentUpdates() {
+		Person person = createPerson(addedIds.peek(), "name" + addedIds.peek() + "@example.com", Gender.FEMALE);
+		updatingConcurrently = true;
+		concurrentUpdates = runAsync(() -> {
+			while (updatingConcurrently) {
+				dataset.update(person);
+				concurrentUpdateCount.incrementAndGet();
+			}
+		});
+	}
+
+	public void stopConcurrentUpdates() {
+		updatingConcurrently = false;
+		concurrentUpdates.join();
+	}
+
+	private static Person createPerson(Long id, String email, Gender gender) {
+		Person person = new Person();
+		person.setId(id);
+		person.setEmail(email);
+		person.setGender(gender);
+		person.setDateOfBirth(LocalDate.of(1900, 1, 1).plusDays(id));
+		return person;
+	}
+
+	public PagedDataModel<Person> getNonLazyPersonsWithDataset() {
+		return nonLazyPersonsWithDataset;
+	}
+
+	public long getConcurrentUpdateCount() {
+		return concurrentUpdateCount.get();
+	}
+
+}
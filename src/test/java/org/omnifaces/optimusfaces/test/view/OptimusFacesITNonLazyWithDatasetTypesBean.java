@@ -0,0 +1,59 @@
+/*
+ * Copyright OmniFaces
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.optimusfaces.test.view;
+
+import static java.lang.Boolean.parseBoolean;
+import static java.util.Arrays.asList;
+import static org.omnifaces.util.Faces.getRequestParameter;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Named;
+
+import org.omnifaces.cdi.ViewScoped;
+import org.omnifaces.optimusfaces.model.Dataset;
+import org.omnifaces.optimusfaces.model.PagedDataModel;
+import org.omnifaces.optimusfaces.test.model.dto.Measurement;
+
+@Named
+@ViewScoped
+public class OptimusFacesITNonLazyWithDatasetTypesBean implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private PagedDataModel<Measurement> nonLazyMeasurements;
+
+	@PostConstruct
+	public void init() {
+		LocalDateTime nine = LocalDateTime.of(2020, 1, 1, 9, 0);
+		LocalDateTime ten = LocalDateTime.of(2020, 1, 1, 10, 0);
+		Dataset<Measurement> dataset = Dataset.of(asList(
+			new Measurement(1L, "ISPARTA", new BigDecimal("10.50"), ten, 3, asList("c", "b")),
+			new Measurement(2L, "istanbul", null, nine, null, asList("d", "a")),
+			new Measurement(3L, "izmir", new BigDecimal("2.5"), null, 3, asList("b")),
+			new Measurement(4L, "ankara", new BigDecimal("10.5"), ten, 1, asList("a")),
+			new Measurement(5L, "bursa", new BigDecimal("100"), LocalDateTime.of(2019, 12, 31, 23, 59), null, asList("a")),
+			new Measurement(6L, "edirne", new BigDecimal("2.50"), nine, 2, asList("b", "e"))
+		), parseBoolean(getRequestParameter("columnar")));
+
+		nonLazyMeasurements = PagedDataModel.nonLazy(dataset).build();
+	}
+
+	public PagedDataModel<Measurement> getNonLazyMeasurements() {
+		return nonLazyMeasurements;
+	}
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright OmniFaces
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.optimusfaces.test.view;
+
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.omnifaces.cdi.ViewScoped;
+import org.omnifaces.optimusfaces.model.BackgroundExecutor;
+import org.omnifaces.optimusfaces.model.MappedDataset;
+import org.omnifaces.optimusfaces.model.PagedDataModel;
+import org.omnifaces.optimusfaces.test.model.Person;
+import org.omnifaces.optimusfaces.test.service.MappedDatasetService;
+
+@Named
+@ViewScoped
+public class OptimusFacesITNonLazyWithMappedDatasetBean implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private PagedDataModel<Person> nonLazyPersonsWithMappedDataset;
+	private String sameInstance;
+
+	@Inject
+	private MappedDatasetService mappedDatasetService;
+
+	@PostConstruct
+	public void init() {
+		nonLazyPersonsWithMappedDataset = PagedDataModel.nonLazy(mappedDatasetService.getDataset()).build();
+	}
+
+	public void roundTrip() {
+		MappedDataset<Person> dataset = mappedDatasetService.getDataset();
+		boolean inRequestThread = roundTrip(dataset) == dataset;
+		boolean inBackgroundThread = supplyAsync(() -> roundTrip(dataset), BackgroundExecutor.getDefault()).join() == dataset; // Has no faces context.
+		sameInstance = inRequestThread + "," + inBackgroundThread;
+		nonLazyPersonsWithMappedDataset = roundTrip(nonLazyPersonsWithMappedDataset);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T roundTrip(T object) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+			try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+				output.writeObject(object);
+			}
+
+			try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+				return (T) input.readObject();
+			}
+		}
+		catch (IOException | ClassNotFoundException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public PagedDataModel<Person> getNonLazyPersonsWithSharedDataset() {
+		return nonLazyPersonsWithMappedDataset;
+	}
+
+	public String getSameInstance() {
+		return sameInstance;
+	}
+
+}
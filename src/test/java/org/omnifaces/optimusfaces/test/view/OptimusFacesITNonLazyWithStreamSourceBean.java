@@ -0,0 +1,56 @@
+/*
+ * Copyright OmniFaces
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.optimusfaces.test.view;
+
+import static org.omnifaces.optimusfaces.test.service.StartupService.TOTAL_RECORDS;
+
+import java.io.Serializable;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Named;
+
+import org.omnifaces.cdi.ViewScoped;
+import org.omnifaces.optimusfaces.model.PagedDataModel;
+import org.omnifaces.optimusfaces.test.model.Gender;
+import org.omnifaces.optimusfaces.test.model.Person;
+
+@Named
+@ViewScoped
+public class OptimusFacesITNonLazyWithStreamSourceBean implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private PagedDataModel<Person> nonLazyPersons;
+
+	@PostConstruct
+	public void init() {
+		nonLazyPersons = PagedDataModel.nonLazy(OptimusFacesITNonLazyWithStreamSourceBean::streamPersons).build();
+	}
+
+	private static Stream<Person> streamPersons() {
+		return LongStream.rangeClosed(1, TOTAL_RECORDS).mapToObj(id -> {
+			Person person = new Person();
+			person.setId(id);
+			person.setEmail("name" + id + "@example.com");
+			person.setGender(Gender.values()[(int) (id % Gender.values().length)]);
+			return person;
+		});
+	}
+
+	public PagedDataModel<Person> getNonLazyPersons() {
+		return nonLazyPersons;
+	}
+
+}